@@ -0,0 +1,348 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+/**
+ * Brouillage / débrouillage d'un lot d'images dans une seule JVM.
+ *
+ * Le traitement est un pipeline à trois étages (décodage, permutation des
+ * lignes, encodage), reliés par des files bornées : un étage trop rapide se
+ * bloque quand la file suivante est pleine, ce qui limite le nombre d'images
+ * en mémoire. Chaque étage compte les images traitées et son temps de travail.
+ *
+ * Les tables de permutation sont mises en cache par (hauteur, clé, sens) :
+ * elles ne sont calculées qu'une fois pour toutes les images de même hauteur.
+ */
+public class BatchScrambler {
+
+    // Une image à traiter : entrée, clé, sortie et sens.
+    public static final class Entry {
+        final File input;
+        final int key;
+        final File output;
+        final boolean unscramble;
+
+        public Entry(File input, int key, File output, boolean unscramble) {
+            this.input = input;
+            this.key = key & 0x7FFF;
+            this.output = output;
+            this.unscramble = unscramble;
+        }
+    }
+
+    // Compteurs d'un étage du pipeline.
+    public static final class StageStats {
+        final String name;
+        final AtomicLong items = new AtomicLong();
+        final AtomicLong pixels = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+
+        StageStats(String name) {
+            this.name = name;
+        }
+
+        void record(long startNanos, BufferedImage image) {
+            busyNanos.addAndGet(System.nanoTime() - startNanos);
+            items.incrementAndGet();
+            pixels.addAndGet((long) image.getWidth() * image.getHeight());
+        }
+
+        @Override
+        public String toString() {
+            double busy = busyNanos.get() / 1e9;
+            return String.format("%-11s %5d images  %8.1f Mpx  occupé %7.3f s  %7.2f images/s (par thread occupé)",
+                    name, items.get(), pixels.get() / 1e6, busy, busy > 0 ? items.get() / busy : 0.0);
+        }
+    }
+
+    // Image en cours de traitement entre deux étages.
+    private static final class Job {
+        final Entry entry;
+        final BufferedImage image;
+
+        Job(Entry entry, BufferedImage image) {
+            this.entry = entry;
+            this.image = image;
+        }
+    }
+
+    // Marque de fin envoyée à chaque thread d'un étage.
+    private static final Job END = new Job(null, null);
+
+    private final Map<Long, int[]> permutations = new ConcurrentHashMap<>();
+    private final StageStats decodeStats = new StageStats("décodage");
+    private final StageStats permuteStats = new StageStats("permutation");
+    private final StageStats encodeStats = new StageStats("encodage");
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * Lit un manifeste : une entrée par ligne, "entrée clé sortie [scramble|unscramble]",
+     * les lignes vides et celles commençant par # sont ignorées.
+     */
+    public static List<Entry> readManifest(File manifest) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length < 3) {
+                throw new IOException(manifest + ":" + lineNumber + ": attendu <entrée> <clé> <sortie> [processus]");
+            }
+            boolean unscramble = false;
+            if (parts.length >= 4) {
+                try {
+                    unscramble = isUnscramble(parts[3]);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(manifest + ":" + lineNumber + ": " + e.getMessage());
+                }
+            }
+            entries.add(new Entry(new File(parts[0]), Integer.parseInt(parts[1]), new File(parts[2]), unscramble));
+        }
+        return entries;
+    }
+
+    // Sens d'un processus : "scramble" (false) ou "unscramble" (true), tout autre mot est refusé.
+    static boolean isUnscramble(String process) {
+        if (process.equals("unscramble")) {
+            return true;
+        }
+        if (process.equals("scramble")) {
+            return false;
+        }
+        throw new IllegalArgumentException("processus inconnu \"" + process + "\" (scramble ou unscramble)");
+    }
+
+    /**
+     * Liste les images d'un dossier (triées par nom), toutes traitées avec la
+     * même clé ; les sorties sont écrites en PNG dans outDir.
+     */
+    public static List<Entry> listDirectory(File dir, int key, boolean unscramble, File outDir) {
+        File[] files = dir.listFiles(File::isFile);
+        if (files == null) {
+            throw new IllegalArgumentException("Dossier illisible: " + dir);
+        }
+        Arrays.sort(files);
+        List<Entry> entries = new ArrayList<>();
+        for (File f : files) {
+            String name = f.getName();
+            int dot = name.lastIndexOf('.');
+            String base = dot > 0 ? name.substring(0, dot) : name;
+            entries.add(new Entry(f, key, new File(outDir, base + ".png"), unscramble));
+        }
+        return entries;
+    }
+
+    /**
+     * Traite toutes les entrées.
+     *
+     * @param entries  images à traiter
+     * @param decoders nombre de threads de décodage
+     * @param permuters nombre de threads de permutation
+     * @param encoders nombre de threads d'encodage
+     * @param queueSize capacité des files entre étages
+     * @return nombre d'images en échec
+     */
+    public int run(List<Entry> entries, int decoders, int permuters, int encoders, int queueSize)
+            throws InterruptedException {
+        BlockingQueue<Job> decoded = new ArrayBlockingQueue<>(queueSize);
+        BlockingQueue<Job> permuted = new ArrayBlockingQueue<>(queueSize);
+        AtomicInteger next = new AtomicInteger();
+
+        List<Thread> decodeThreads = start("decode", decoders, () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < entries.size()) {
+                Entry entry = entries.get(i);
+                long t0 = System.nanoTime();
+                try {
+                    BufferedImage image = ImageIO.read(entry.input);
+                    if (image == null) {
+                        throw new IOException("Format d’image non reconnu: " + entry.input);
+                    }
+                    decodeStats.record(t0, image);
+                    decoded.put(new Job(entry, image));
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Throwable e) {
+                    fail(entry, e);
+                }
+            }
+        });
+        List<Thread> permuteThreads = start("permute", permuters, () -> {
+            Job job;
+            while ((job = decoded.take()) != END) {
+                long t0 = System.nanoTime();
+                try {
+                    BufferedImage image = job.image;
+                    BufferedImage out = RasterRows.createCompatible(image);
+                    RasterRows.copyRows(image, out, sourceRows(image.getHeight(), job.entry), 1);
+                    permuteStats.record(t0, out);
+                    permuted.put(new Job(job.entry, out));
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Throwable e) {
+                    fail(job.entry, e);
+                }
+            }
+        });
+        List<Thread> encodeThreads = start("encode", encoders, () -> {
+            Job job;
+            while ((job = permuted.take()) != END) {
+                long t0 = System.nanoTime();
+                try {
+                    File parent = job.entry.output.getAbsoluteFile().getParentFile();
+                    if (parent != null) {
+                        Files.createDirectories(parent.toPath());
+                    }
+                    if (!ImageIO.write(job.image, "png", job.entry.output)) {
+                        throw new IOException("Aucun writer PNG d'ImageIO pour cette image (type "
+                                + job.image.getType() + ")");
+                    }
+                    encodeStats.record(t0, job.image);
+                } catch (Throwable e) {
+                    fail(job.entry, e);
+                }
+            }
+        });
+
+        // Arrêt en cascade : chaque étage reçoit une marque de fin par thread
+        joinAll(decodeThreads);
+        for (int i = 0; i < permuters; i++) {
+            decoded.put(END);
+        }
+        joinAll(permuteThreads);
+        for (int i = 0; i < encoders; i++) {
+            permuted.put(END);
+        }
+        joinAll(encodeThreads);
+        return failures.get();
+    }
+
+    // Lignes sources de chaque ligne de sortie, calculées une fois par (hauteur, clé, sens).
+    int[] sourceRows(int height, Entry entry) {
+        long cacheKey = ((long) height << 16) | ((long) entry.key << 1) | (entry.unscramble ? 1 : 0);
+        return permutations.computeIfAbsent(cacheKey, k -> {
+            int[] perm = Brouillimg.generatePermutation(height, entry.key);
+            return entry.unscramble ? perm : RasterRows.invert(perm);
+        });
+    }
+
+    // Nombre de tables de permutation en cache.
+    public int cachedPermutations() {
+        return permutations.size();
+    }
+
+    public List<StageStats> stats() {
+        return List.of(decodeStats, permuteStats, encodeStats);
+    }
+
+    // Une image en échec (y compris OutOfMemoryError) : le thread de l'étage continue, le lot se termine.
+    private void fail(Entry entry, Throwable e) {
+        failures.incrementAndGet();
+        System.err.println("Échec " + entry.input + ": " + (e.getMessage() != null ? e.getMessage() : e));
+    }
+
+    // Corps d'un thread d'étage, pouvant être interrompu pendant une attente sur une file.
+    private interface StageBody {
+        void run() throws InterruptedException;
+    }
+
+    private static List<Thread> start(String name, int count, StageBody body) {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    body.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "batch-" + name + "-" + i);
+            t.start();
+            threads.add(t);
+        }
+        return threads;
+    }
+
+    private static void joinAll(List<Thread> threads) throws InterruptedException {
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+
+    /**
+     * Mode lot de Brouillimg :
+     *   batch <manifeste> [threads=N] [queue=N]
+     *   batch <dossier> <clé> <scramble|unscramble> <dossier_sortie> [threads=N] [queue=N]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java Brouillimg batch <manifeste> [threads=N] [queue=N]");
+            System.err.println("       java Brouillimg batch <dossier> <clé> <scramble|unscramble> <dossier_sortie> [threads=N] [queue=N]");
+            System.err.println("  manifeste : une ligne par image, \"entrée clé sortie [scramble|unscramble]\"");
+            System.exit(1);
+        }
+        File source = new File(args[0]);
+        List<String> options = new ArrayList<>();
+        List<Entry> entries;
+        if (source.isDirectory()) {
+            if (args.length < 4) {
+                System.err.println("Usage: java Brouillimg batch <dossier> <clé> <scramble|unscramble> <dossier_sortie>");
+                System.exit(1);
+            }
+            entries = listDirectory(source, Integer.parseInt(args[1]), isUnscramble(args[2]),
+                    new File(args[3]));
+            options.addAll(Arrays.asList(args).subList(4, args.length));
+        } else {
+            entries = readManifest(source);
+            options.addAll(Arrays.asList(args).subList(1, args.length));
+        }
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int queue = 4;
+        for (String option : options) {
+            if (option.startsWith("threads=")) {
+                threads = Math.max(1, Integer.parseInt(option.substring("threads=".length())));
+            } else if (option.startsWith("queue=")) {
+                queue = Math.max(1, Integer.parseInt(option.substring("queue=".length())));
+            } else {
+                throw new IllegalArgumentException("Option inconnue: " + option);
+            }
+        }
+
+        System.out.println("Lot de " + entries.size() + " images (" + threads + " threads de décodage et d'encodage)");
+        BatchScrambler batch = new BatchScrambler();
+        long t0 = System.nanoTime();
+        int failed = batch.run(entries, threads, 1, threads, queue);
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+
+        for (StageStats s : batch.stats()) {
+            System.out.println(s);
+        }
+        System.out.println("Tables de permutation calculées: " + batch.cachedPermutations());
+        System.out.println(String.format("Total: %d images en %.3f s (%.2f images/s), %d échec(s)",
+                entries.size() - failed, elapsed, (entries.size() - failed) / elapsed, failed));
+        if (failed > 0) {
+            System.exit(2);
+        }
+    }
+}
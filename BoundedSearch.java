@@ -0,0 +1,235 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Recherche de clé par séparation et évaluation (abandon anticipé).
+ *
+ * Score euclidien : somme de distances positives, la somme partielle ne fait
+ * que croître ; dès qu'elle dépasse la meilleure somme connue, la clé ne peut
+ * plus gagner et le reste des lignes n'est pas évalué.
+ *
+ * Score de Pearson : chaque corrélation vaut au plus 1. Si la somme partielle,
+ * complétée par une corrélation parfaite pour chaque paire restante, reste
+ * sous le meilleur score connu, la clé est abandonnée.
+ *
+ * Les clés sont évaluées des plus prometteuses aux moins prometteuses : les
+ * valeurs de S sont classées d'après le score des premières paires de lignes
+ * (R = 0), puis toutes les valeurs de R d'un même S se suivent. La bonne clé
+ * arrive ainsi tôt et resserre la borne pour toutes les autres. La clé trouvée
+ * est la même que celle du parcours exhaustif.
+ */
+public class BoundedSearch {
+
+    // Marge sur la corrélation maximale, pour couvrir les erreurs d'arrondi
+    private static final double MAX_CORRELATION = 1 + 1e-9;
+
+    // Nombre minimal de paires de lignes pour classer les valeurs de S
+    private static final int MIN_PREFIX_PAIRS = 16;
+
+    /**
+     * Score borné d'une clé. Compte les paires de lignes évaluées et celles
+     * évitées par l'abandon. Une instance n'est utilisée que par un thread.
+     *
+     * Aucune permutation n'est construite : la ligne claire i+1 est toujours
+     * un pas (2s+1) % H plus loin que la ligne claire i dans l'image brouillée,
+     * les lignes sont donc parcourues directement à ce pas à partir de r % H.
+     * Le score ne fait aucune allocation.
+     */
+    public static final class Scorer implements ParallelKeySearch.BoundedKeyScorer {
+        private final LumaImage luma;
+        private final RowStats stats;
+        private final int height;
+        private long pairsScored;
+        private long pairsPruned;
+        private long keysPruned;
+
+        // stats == null : score euclidien (à minimiser), sinon Pearson (à maximiser)
+        Scorer(LumaImage luma, RowStats stats) {
+            this.luma = luma;
+            this.stats = stats;
+            this.height = luma.height();
+        }
+
+        @Override
+        public double score(int key) {
+            return score(key, stats == null ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY);
+        }
+
+        @Override
+        public double score(int key, double bound) {
+            int pairs = height - 1;
+            if (pairs <= 0) {
+                return 0.0;
+            }
+            int step = (2 * (key & 0x7F) + 1) % height;
+            int p = (key >> 7) % height;
+            if (stats == null) {
+                // Même ordre d'addition que keyBreak.scoreEuclidean : même résultat au bit près
+                double total = 0.0;
+                for (int i = 0; i < pairs; i++) {
+                    int q = p + step < height ? p + step : p + step - height;
+                    total += luma.euclideanDistance(p, q);
+                    if (total > bound) {
+                        prune(i + 1, pairs);
+                        return total;
+                    }
+                    p = q;
+                }
+                pairsScored += pairs;
+                return total;
+            }
+            double score = 0;
+            for (int i = 0; i < pairs; i++) {
+                int q = p + step < height ? p + step : p + step - height;
+                score += stats.correlation(luma, p, q);
+                double upper = (score + (pairs - i - 1) * MAX_CORRELATION) / pairs;
+                if (upper < bound) {
+                    prune(i + 1, pairs);
+                    return upper;
+                }
+                p = q;
+            }
+            pairsScored += pairs;
+            return score / pairs;
+        }
+
+        // Score des n premières paires de lignes, sans borne (classement des candidats).
+        double prefixScore(int key, int n) {
+            int step = (2 * (key & 0x7F) + 1) % height;
+            int p = (key >> 7) % height;
+            n = Math.min(n, height - 1);
+            double score = 0;
+            for (int i = 0; i < n; i++) {
+                int q = p + step < height ? p + step : p + step - height;
+                score += stats == null ? luma.euclideanDistance(p, q) : stats.correlation(luma, p, q);
+                p = q;
+            }
+            pairsScored += n;
+            return score;
+        }
+
+        private void prune(int scored, int pairs) {
+            pairsScored += scored;
+            pairsPruned += pairs - scored;
+            keysPruned++;
+        }
+    }
+
+    // Meilleure clé et statistiques d'élagage.
+    public static final class Result {
+        public final int key;
+        public final double score;
+        public final int keys;
+        public final long pairsScored;
+        public final long pairsPruned;
+        public final long keysPruned;
+
+        Result(int key, double score, int keys, long pairsScored, long pairsPruned, long keysPruned) {
+            this.key = key;
+            this.score = score;
+            this.keys = keys;
+            this.pairsScored = pairsScored;
+            this.pairsPruned = pairsPruned;
+            this.keysPruned = keysPruned;
+        }
+
+        // Part des paires de lignes évitées, sur l'ensemble des clés.
+        public double prunedFraction() {
+            long total = pairsScored + pairsPruned;
+            return total > 0 ? (double) pairsPruned / total : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Paires de lignes évaluées: %d, élaguées: %d (%.1f %%), clés abandonnées: %d/%d",
+                    pairsScored, pairsPruned, 100 * prunedFraction(), keysPruned, keys);
+        }
+    }
+
+    // Fabrique de scorers bornés (un par thread) ; les statistiques de lignes sont partagées.
+    public static Supplier<Scorer> scorers(LumaImage luma, boolean pearson) {
+        RowStats stats = pearson ? RowStats.of(luma) : null;
+        return () -> new Scorer(luma, stats);
+    }
+
+    /**
+     * Cherche la meilleure clé (s | r << 7) pour s dans [0, sCount) et r dans
+     * [0, rCount).
+     *
+     * @param luma    image brouillée en niveaux de gris
+     * @param pearson true pour Pearson (maximisé), false pour l'euclidien (minimisé)
+     * @param sCount  nombre de valeurs de S (128 pour toutes les clés)
+     * @param rCount  nombre de valeurs de R (256 pour toutes les clés, 1 pour R = 0)
+     * @param threads nombre de threads
+     */
+    public static Result search(LumaImage luma, boolean pearson, int sCount, int rCount, int threads) {
+        return search(luma, pearson, sCount, rCount, threads, SearchProgress.NONE);
+    }
+
+    // Même recherche, avec suivi de l'avancement (clés évaluées, meilleure clé)
+    public static Result search(LumaImage luma, boolean pearson, int sCount, int rCount, int threads,
+                                SearchProgress progress) {
+        RowStats stats = pearson ? RowStats.of(luma) : null;
+        List<Scorer> scorers = Collections.synchronizedList(new ArrayList<>());
+
+        Scorer first = new Scorer(luma, stats);
+        scorers.add(first);
+        int[] keys = promisingOrder(first, pearson, sCount, rCount);
+
+        ParallelKeySearch.Result best = ParallelKeySearch.searchBounded(keys, threads, !pearson,
+                progress.trackBounded(() -> {
+                    if (threads <= 1) {
+                        return first;
+                    }
+                    Scorer scorer = new Scorer(luma, stats);
+                    scorers.add(scorer);
+                    return scorer;
+                }));
+
+        long scored = 0;
+        long pruned = 0;
+        long keysPruned = 0;
+        synchronized (scorers) {
+            for (Scorer s : scorers) {
+                scored += s.pairsScored;
+                pruned += s.pairsPruned;
+                keysPruned += s.keysPruned;
+            }
+        }
+        return new Result(best.key, best.score, keys.length, scored, pruned, keysPruned);
+    }
+
+    // Toutes les clés (s | r << 7), des plus prometteuses aux moins prometteuses (voir search).
+    public static int[] promisingKeys(LumaImage luma, boolean pearson, int sCount, int rCount) {
+        return promisingOrder(new Scorer(luma, pearson ? RowStats.of(luma) : null), pearson, sCount, rCount);
+    }
+
+    // Clés classées par S prometteur d'abord (score des premières paires, R = 0), puis par R croissant.
+    static int[] promisingOrder(Scorer scorer, boolean pearson, int sCount, int rCount) {
+        int height = scorer.height;
+        int prefix = Math.max(MIN_PREFIX_PAIRS, height / 16);
+        double[] seed = new double[sCount];
+        List<Integer> order = new ArrayList<>(sCount);
+        for (int s = 0; s < sCount; s++) {
+            seed[s] = scorer.prefixScore(s, prefix);
+            order.add(s);
+        }
+        order.sort((a, b) -> pearson ? Double.compare(seed[b], seed[a]) : Double.compare(seed[a], seed[b]));
+
+        int[] keys = new int[sCount * rCount];
+        int i = 0;
+        for (int s : order) {
+            for (int r = 0; r < rCount; r++) {
+                keys[i++] = (r << 7) | s;
+            }
+        }
+        return keys;
+    }
+}
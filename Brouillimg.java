@@ -6,19 +6,68 @@
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
 import javax.imageio.ImageIO;
 
 public class Brouillimg {
 
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws Exception {
+        // Mode lot : plusieurs images dans la même JVM (voir BatchScrambler)
+        if (args.length >= 1 && args[0].equals("batch")) {
+            BatchScrambler.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // Mode service : serveur HTTP local, une seule JVM pour toutes les requêtes (voir ImageService)
+        if (args.length >= 1 && args[0].equals("serve")) {
+            ImageService.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         if (args.length < 3) {
-            System.err.println("Usage: java Brouillimg <image_claire> <clé> <processus(scramble/unscramble) [image_sortie] >");
+            System.err.println("Usage: java Brouillimg <image_claire> <clé> <processus(scramble/unscramble) [image_sortie(.png|.raw)] [threads=N] [stream=Mo] [mode=rows|columns|tiles] [tile=T] [inplace] [png=L] >");
+            System.err.println("       java Brouillimg batch <manifeste | dossier clé processus dossier_sortie> [threads=N] [queue=N]");
+            System.err.println("       java Brouillimg serve [port=P] [threads=N] [queue=Q] [cache=C]");
             System.exit(1);
         }
 
         String inPath = args[0];
         //si on passe 3 ou + arguments à la fonction
-        String outPath = (args.length >= 4) ? args[3] : "out.png";
+        String outPath = "out.png";
+        // threads=N : répartit la copie des lignes sur N threads (N=0 : un par cœur)
+        int threads = 1;
+        // stream=Mo : traitement en flux par bandes, mémoire bornée à Mo mégaoctets (sortie PNG)
+        long streamBudget = 0;
+        // mode=columns|tiles : brouillage des colonnes ou de tuiles de T x T pixels (voir TiledScrambler)
+        TiledScrambler.Mode mode = TiledScrambler.Mode.ROWS;
+        int tile = TiledScrambler.DEFAULT_TILE;
+        // inplace : permute les lignes sur l'image lue, sans allouer d'image de sortie
+        boolean inPlace = false;
+        // png=L : niveau de compression du PNG (0..9), compressé par bandes sur les N threads
+        int pngLevel = Deflater.DEFAULT_COMPRESSION;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("inplace")) {
+                inPlace = true;
+            } else if (args[i].startsWith("png=")) {
+                pngLevel = Integer.parseInt(args[i].substring("png=".length()));
+                if (pngLevel < 0 || pngLevel > 9) {
+                    throw new IllegalArgumentException("Niveau de compression PNG invalide (0..9): " + pngLevel);
+                }
+            } else if (args[i].startsWith("mode=")) {
+                mode = TiledScrambler.Mode.parse(args[i].substring("mode=".length()));
+            } else if (args[i].startsWith("tile=")) {
+                tile = Integer.parseInt(args[i].substring("tile=".length()));
+            } else if (args[i].startsWith("stream=")) {
+                streamBudget = Long.parseLong(args[i].substring("stream=".length())) << 20;
+            } else if (args[i].startsWith("threads=")) {
+                threads = Integer.parseInt(args[i].substring("threads=".length()));
+                if (threads <= 0) {
+                    threads = Runtime.getRuntime().availableProcessors();
+                }
+            } else {
+                outPath = args[i];
+            }
+        }
 
         String processus = args[2];
 
@@ -26,7 +75,44 @@ public class Brouillimg {
         // Masque 0x7FFF pour garantir que la clé ne dépasse pas les 15 bits
 
         int key = Integer.parseInt(args[1]) & 0x7FFF;
-        BufferedImage inputImage = ImageIO.read(new File(inPath));
+
+        if (!processus.equals("scramble") && !processus.equals("unscramble")) {
+            throw new IllegalArgumentException("Processus inconnu: " + processus);
+        }
+
+        if (streamBudget > 0 && mode != TiledScrambler.Mode.ROWS) {
+            throw new IllegalArgumentException("Le traitement en flux ne permute que des lignes");
+        }
+
+        if (inPlace && (mode != TiledScrambler.Mode.ROWS || streamBudget > 0)) {
+            throw new IllegalArgumentException("Le mode inplace ne s'applique qu'au brouillage des lignes en mémoire");
+        }
+
+        if (streamBudget > 0) {
+            StripScrambler.process(new File(inPath), new File(outPath), key, processus.equals("unscramble"),
+                    streamBudget);
+            System.out.println("Image écrite: " + outPath);
+            return;
+        }
+
+        boolean rawOutput = outPath.endsWith(".raw");
+
+        // Conteneur brut (voir RawImageFile) : lu par projection mémoire, sans décodage
+        BufferedImage inputImage;
+        if (RawImageFile.isRawFile(new File(inPath))) {
+            try (RawImageFile raw = RawImageFile.open(Path.of(inPath), false)) {
+                System.out.println("Dimensions de l'image : " + raw.width() + "x" + raw.height());
+                if (rawOutput && mode == TiledScrambler.Mode.ROWS) {
+                    // Brut vers brut : simple recopie de lignes entre projections
+                    RawImageFile.permute(raw, Path.of(outPath), key, processus.equals("unscramble"));
+                    System.out.println("Image écrite: " + outPath);
+                    return;
+                }
+                inputImage = raw.toImage();
+            }
+        } else {
+            inputImage = ImageIO.read(new File(inPath));
+        }
 
         if (inputImage == null) {
             throw new IOException("Format d’image non reconnu: " + inPath);
@@ -36,27 +122,57 @@ public class Brouillimg {
         final int width = inputImage.getWidth();
         System.out.println("Dimensions de l'image : " + width + "x" + height);
 
-        // Pré‑calcul des lignes en niveaux de gris pour accélérer le calcul du critère
+        if (mode != TiledScrambler.Mode.ROWS) {
+            boolean unscramble = processus.equals("unscramble");
+            BufferedImage out = unscramble ? TiledScrambler.unscramble(inputImage, key, mode, tile, threads)
+                    : TiledScrambler.scramble(inputImage, key, mode, tile, threads);
+            write(out, outPath, key, unscramble ? 0 : RawImageFile.FLAG_SCRAMBLED, pngLevel, threads);
+            System.out.println("Image écrite: " + outPath);
+            return;
+        }
+
+        if (inPlace) {
+            // Une clé dont 2s+1 n'est pas premier avec la hauteur est refusée par RasterRows.permuteRowsInPlace
+            int[] perm = generatePermutation(height, key);
+            boolean unscramble = processus.equals("unscramble");
+            if (unscramble) {
+                unScrambleLinesInPlace(inputImage, perm);
+            } else {
+                scrambleLinesInPlace(inputImage, perm);
+            }
+            write(inputImage, outPath, key, unscramble ? 0 : RawImageFile.FLAG_SCRAMBLED, pngLevel, threads);
+            System.out.println("Image écrite: " + outPath);
+            return;
+        }
 
         if(processus.equals("scramble")){
-            int[][] inputImageGL = rgb2gl(inputImage);
             int[] perm = generatePermutation(height, key);
-            BufferedImage scrambledImage = scrambleLines(inputImage, perm);
-            ImageIO.write(scrambledImage, "png", new File(outPath));
+            BufferedImage scrambledImage = scrambleLines(inputImage, perm, threads);
+            write(scrambledImage, outPath, key, RawImageFile.FLAG_SCRAMBLED, pngLevel, threads);
             System.out.println("Image écrite: " + outPath);
         }
 
         if(processus.equals("unscramble")){
             System.out.println("unscramble");
-            int[][] inputImageGL = rgb2gl(inputImage);
             int[] perm = generatePermutation(height, key);
-            BufferedImage scrambledImage = unScrambleLines(inputImage, perm);
-            ImageIO.write(scrambledImage, "png", new File(outPath));
+            BufferedImage scrambledImage = unScrambleLines(inputImage, perm, threads);
+            write(scrambledImage, outPath, key, 0, pngLevel, threads);
             System.out.println("Image écrite: " + outPath);
         }
 
     }
 
+    // Écrit l'image en PNG, ou dans un conteneur brut si le nom se termine par .raw.
+    private static void write(BufferedImage img, String outPath, int key, int flags, int pngLevel, int threads)
+            throws IOException {
+        if (outPath.endsWith(".raw")) {
+            RawImageFile.write(img, Path.of(outPath), key, flags);
+        } else {
+            // Type de couleur de la source (RGB sans alpha pour une image opaque), bandes compressées en parallèle
+            PngStreamWriter.write(img, new File(outPath), pngLevel, threads);
+        }
+    }
+
     /**
      * 
      * Convertit une image RGB en niveaux de gris (GL).
@@ -68,25 +184,8 @@ public class Brouillimg {
      */
 
     public static int[][] rgb2gl(BufferedImage inputRGB) {
-        final int height = inputRGB.getHeight();
-        final int width = inputRGB.getWidth();
-        int[][] outGL = new int[height][width];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int argb = inputRGB.getRGB(x, y);
-                int r = (argb >> 16) & 0xFF;
-                int g = (argb >> 8) & 0xFF;
-                int b = argb & 0xFF;
-
-                // luminance simple (évite float)
-
-                int gray = (r * 299 + g * 587 + b * 114) / 1000;
-                outGL[y][x] = gray;
-
-            }
-
-        }
-        return outGL;
+        // Lecture directe du Raster (sans getRGB pixel par pixel), même résultat
+        return RasterRows.toGray(inputRGB);
     }
 
     /**
@@ -125,28 +224,99 @@ public class Brouillimg {
      */
 
     public static BufferedImage unScrambleLines(BufferedImage inputImg, int[] perm) {
-        int width = inputImg.getWidth();
+        return unScrambleLines(inputImg, perm, 1);
+    }
+
+    /**
+     * 
+     * Remet les lignes d'une image brouillée dans l'ordre, par copie de lignes
+     * entières sur le Raster. L'image de sortie garde le type de l'image d'entrée.
+     * 
+     * @param inputImg image brouillée
+     * 
+     * @param perm     permutation des lignes (taille = hauteur de l'image)
+     * 
+     * @param threads  nombre de threads pour la copie des lignes (1 = séquentiel)
+     * 
+     * @return image de sortie avec les lignes remises dans l'ordre
+     * 
+     */
+
+    public static BufferedImage unScrambleLines(BufferedImage inputImg, int[] perm, int threads) {
         int height = inputImg.getHeight();
 
         if (perm.length != height) {
             throw new IllegalArgumentException("Taille d'image <> taille permutation");
         }
 
-        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage out = RasterRows.createCompatible(inputImg);
 
-        for (int y = 0; y < height; y++) {
-            int srcY = perm[y];
-            for (int x = 0; x < width; x++) {
-                int pixel = inputImg.getRGB(x, srcY);
-                out.setRGB(x, y, pixel);
-            }
-        }
+        // La ligne y de la sortie est la ligne perm[y] de l'image brouillée
+        RasterRows.copyRows(inputImg, out, perm, threads);
 
         return out;
     }
 
     public static BufferedImage scrambleLines(BufferedImage inputImg, int[] perm) {
-        int width = inputImg.getWidth();
+        return scrambleLines(inputImg, perm, 1);
+    }
+
+    /**
+     * 
+     * Remet les lignes d'une image brouillée dans l'ordre sur son propre Raster,
+     * sans seconde image : les cycles de la permutation sont suivis avec un
+     * tampon d'une ligne (voir RasterRows.permuteRowsInPlace).
+     * 
+     * @param img  image brouillée, modifiée sur place
+     * 
+     * @param perm permutation des lignes (doit être une bijection)
+     * 
+     * @throws IllegalArgumentException si perm n'est pas une bijection
+     * 
+     */
+
+    public static void unScrambleLinesInPlace(BufferedImage img, int[] perm) {
+        // La ligne y devient la ligne perm[y] de l'image brouillée
+        RasterRows.permuteRowsInPlace(img, perm);
+    }
+
+    /**
+     * 
+     * Mélange les lignes d'une image sur son propre Raster, sans seconde image.
+     * 
+     * @param img  image d'entrée, modifiée sur place
+     * 
+     * @param perm permutation des lignes (doit être une bijection)
+     * 
+     * @throws IllegalArgumentException si perm n'est pas une bijection
+     * 
+     */
+
+    public static void scrambleLinesInPlace(BufferedImage img, int[] perm) {
+        // Vérifiée avant l'inversion : l'inverse d'une table non bijective peut en être une ({1,1,0} -> [2,1,0])
+        if (!RasterRows.isPermutation(perm)) {
+            throw new IllegalArgumentException("La table ne permute pas les " + perm.length + " lignes");
+        }
+        // La ligne y va en perm[y] : la ligne destY vient de inv[destY]
+        RasterRows.permuteRowsInPlace(img, RasterRows.invert(perm));
+    }
+
+    /**
+     * 
+     * Mélange les lignes d'une image par copie de lignes entières sur le Raster.
+     * L'image de sortie garde le type de l'image d'entrée.
+     * 
+     * @param inputImg image d'entrée
+     * 
+     * @param perm     permutation des lignes (taille = hauteur de l'image)
+     * 
+     * @param threads  nombre de threads pour la copie des lignes (1 = séquentiel)
+     * 
+     * @return image de sortie avec les lignes mélangées
+     * 
+     */
+
+    public static BufferedImage scrambleLines(BufferedImage inputImg, int[] perm, int threads) {
         int height = inputImg.getHeight();
 
         // Vérifie que la taille de la permutation correspond à la hauteur de l'image
@@ -154,20 +324,11 @@ public class Brouillimg {
             throw new IllegalArgumentException("Taille d'image <> taille permutation");
         }
 
-        // Crée une nouvelle image de sortie
-        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        // Crée une nouvelle image de sortie, de même type que l'entrée
+        BufferedImage out = RasterRows.createCompatible(inputImg);
 
-        // Pour chaque ligne de l'image de sortie
-        for (int y = 0; y < height; y++) {
-            int destY = perm[y]; // Ligne source à copier
-            // Pour chaque pixel de la ligne
-            for (int x = 0; x < width; x++) {
-                // Récupère le pixel de l'image d'entrée
-                int pixel = inputImg.getRGB(x, y);
-                // Écrit le pixel dans l'image de sortie
-                out.setRGB(x, destY, pixel);
-            }
-        }
+        // La ligne y de l'entrée va en perm[y] : la ligne destY de la sortie vient de inv[destY]
+        RasterRows.copyRows(inputImg, out, RasterRows.invert(perm), threads);
 
         // Retourne l'image de sortie
         return out;
@@ -0,0 +1,98 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.util.function.Supplier;
+
+/**
+ * Recherche de clé en deux résolutions.
+ *
+ * 1. Toutes les clés candidates sont évaluées sur une image réduite en
+ *    largeur (colonnes moyennées par LumaImage.averageColumns) : chaque paire
+ *    de lignes coûte factor fois moins cher.
+ * 2. Les K meilleures (tas borné à K éléments, voir
+ *    ParallelKeySearch.searchTopK) sont réévaluées en pleine résolution, et
+ *    la meilleure d'entre elles est retenue.
+ *
+ * Le rang de la clé gagnante dans l'étape grossière est renvoyé : s'il est
+ * souvent proche de K, K est trop petit pour ce facteur de réduction.
+ */
+public class CoarseToFine {
+
+    // Scorers d'une image (grossière ou pleine résolution), un par thread.
+    public interface ScorerFactory {
+        Supplier<? extends ParallelKeySearch.KeyScorer> create(LumaImage luma);
+    }
+
+    // Clé retenue, son score en pleine résolution et son rang à l'étape grossière.
+    public static final class Result {
+        public final int key;
+        public final double score;
+        public final int coarseRank;
+        public final int rescored;
+        public final int candidates;
+
+        Result(int key, double score, int coarseRank, int rescored, int candidates) {
+            this.key = key;
+            this.score = score;
+            this.coarseRank = coarseRank;
+            this.rescored = rescored;
+            this.candidates = candidates;
+        }
+
+        @Override
+        public String toString() {
+            return "Rang de la clé retenue à l'étape grossière: " + coarseRank + "/" + rescored
+                    + " (" + candidates + " candidats)";
+        }
+    }
+
+    /**
+     * @param full     image brouillée en pleine résolution
+     * @param factor   nombre de colonnes moyennées pour l'étape grossière
+     * @param k        nombre de candidats réévalués en pleine résolution
+     * @param keys     clés candidates
+     * @param minimize true pour garder le plus petit score, false pour le plus grand
+     * @param threads  nombre de threads
+     * @param factory  scorers à appliquer aux deux résolutions
+     * @return la meilleure des K clés
+     */
+    public static Result search(LumaImage full, int factor, int k, int[] keys, boolean minimize, int threads,
+                                ScorerFactory factory) {
+        return search(full, factor, k, keys, minimize, threads, factory, SearchProgress.NONE);
+    }
+
+    /**
+     * Même recherche, avec suivi de l'avancement : les clés de l'étape
+     * grossière sont comptées, mais seuls les scores en pleine résolution
+     * sont proposés comme meilleure clé (les deux échelles diffèrent).
+     */
+    public static Result search(LumaImage full, int factor, int k, int[] keys, boolean minimize, int threads,
+                                ScorerFactory factory, SearchProgress progress) {
+        if (keys.length == 0 || k < 1) {
+            throw new IllegalArgumentException("Aucun candidat à évaluer");
+        }
+        LumaImage coarse = full.averageColumns(factor);
+        // K meilleurs candidats, du meilleur au moins bon
+        ParallelKeySearch.Result[] top = ParallelKeySearch.searchTopK(keys, k, threads, minimize,
+                factory.create(coarse));
+        progress.scored(keys.length);
+
+        int[] topKeys = new int[top.length];
+        for (int i = 0; i < top.length; i++) {
+            topKeys[i] = top[i].key;
+        }
+        double[] fineScores = ParallelKeySearch.scoreAll(topKeys, threads, progress.track(factory.create(full)));
+
+        int best = 0;
+        for (int i = 1; i < top.length; i++) {
+            double s = fineScores[i];
+            boolean better = minimize ? s < fineScores[best] : s > fineScores[best];
+            if (better || (s == fineScores[best] && topKeys[i] < topKeys[best])) {
+                best = i;
+            }
+        }
+        return new Result(topKeys[best], fineScores[best], best + 1, top.length, keys.length);
+    }
+}
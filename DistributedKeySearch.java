@@ -0,0 +1,421 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recherche de clé répartie sur plusieurs processus (coordinateur et
+ * travailleurs reliés par sockets).
+ *
+ * Le coordinateur découpe les clés candidates en baux (blocs de clés
+ * contigus) et les distribue aux travailleurs connectés, un bail à la fois
+ * par travailleur. Chaque travailleur lit lui-même l'image (même fichier,
+ * même machine), garde ses niveaux de gris entre les baux et renvoie la
+ * meilleure clé de chaque bail (recherche bornée sur ses threads, voir
+ * BoundedSearch). Le coordinateur fusionne les meilleures clés partielles
+ * avec la même règle qu'en séquentiel : meilleur score, puis plus petite clé.
+ *
+ * Si un travailleur meurt (connexion coupée) ou ne répond pas dans le délai
+ * du bail, son bail est remis en tête de la file et confié à un autre. Un
+ * travailleur qui n'arrive pas à évaluer un bail (image illisible, erreur
+ * pendant le calcul des scores) répond par une erreur : le même bail
+ * échouerait ailleurs, la recherche échoue donc aussitôt.
+ *
+ * Protocole (DataOutputStream) :
+ *   coordinateur -> travailleur : 'L' id, chemin de l'image, pearson, borne, n, n clés
+ *                                 'Q' (fin)
+ *   travailleur -> coordinateur : 'R' id, clé, score (clé -1 : aucune clé du bail
+ *                                 n'atteint la borne)
+ *                                 'E' id, message (échec de l'évaluation du bail)
+ *
+ * La borne envoyée avec chaque bail est le meilleur score déjà fusionné :
+ * le travailleur abandonne dès le départ les clés qui ne peuvent plus gagner.
+ * Donner au coordinateur les clés prometteuses en tête (voir
+ * BoundedSearch.promisingKeys) resserre donc la borne pour tous les baux.
+ */
+public class DistributedKeySearch {
+
+    private static final byte LEASE = 'L';
+    private static final byte RESULT = 'R';
+    private static final byte QUIT = 'Q';
+    private static final byte ERROR = 'E';
+
+    // Délai de réponse d'un travailleur à un bail, au-delà duquel le bail est réattribué
+    public static final int DEFAULT_LEASE_TIMEOUT_MILLIS = 600_000;
+
+    // Attente maximale d'un bail dans la file, avant de revoir l'état du coordinateur
+    private static final long POLL_MILLIS = 100;
+
+    // Délai maximal sans aucun travailleur connecté avant abandon de la recherche
+    private static final long NO_WORKER_TIMEOUT_MILLIS = 30_000;
+
+    // Bloc de clés confié à un travailleur.
+    private static final class Lease {
+        final Job job;
+        final int id;
+        final int[] keys;
+
+        Lease(Job job, int id, int[] keys) {
+            this.job = job;
+            this.id = id;
+            this.keys = keys;
+        }
+    }
+
+    // Recherche en cours : baux restants et meilleure clé fusionnée.
+    private static final class Job {
+        final String imagePath;
+        final boolean pearson;
+        final boolean[] done;
+        final CountDownLatch remaining;
+        int bestKey = -1;
+        double bestScore;
+        String failure;
+
+        Job(String imagePath, boolean pearson, int leases) {
+            this.imagePath = imagePath;
+            this.pearson = pearson;
+            this.done = new boolean[leases];
+            this.remaining = new CountDownLatch(leases);
+        }
+
+        // Meilleur score fusionné jusqu'ici, borne des baux suivants.
+        synchronized double bound() {
+            if (bestKey < 0) {
+                return pearson ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            }
+            return bestScore;
+        }
+
+        // Un bail terminé deux fois (réattribué puis rendu en retard) n'est compté qu'une fois.
+        synchronized void merge(int lease, int key, double score) {
+            if (done[lease]) {
+                return;
+            }
+            done[lease] = true;
+            boolean better = key >= 0 && (bestKey < 0 || (pearson ? score > bestScore : score < bestScore)
+                    || (score == bestScore && key < bestKey));
+            if (better) {
+                bestKey = key;
+                bestScore = score;
+            }
+            remaining.countDown();
+        }
+
+        // Échec d'un bail signalé par un travailleur : la recherche s'arrête sans attendre les autres baux.
+        synchronized void fail(int lease, String message) {
+            if (failure == null) {
+                failure = "bail " + lease + ": " + message;
+            }
+            while (remaining.getCount() > 0) {
+                remaining.countDown();
+            }
+        }
+
+        synchronized String failure() {
+            return failure;
+        }
+    }
+
+    /**
+     * Coordinateur : accepte les travailleurs sur 127.0.0.1 et leur
+     * distribue les baux des recherches lancées par search. Plusieurs
+     * recherches successives (étapes de keyBreakOptimise par exemple)
+     * réutilisent les mêmes travailleurs.
+     */
+    public static final class Coordinator implements Closeable {
+        private final ServerSocket server;
+        private final int leaseTimeoutMillis;
+        private final LinkedBlockingDeque<Lease> pending = new LinkedBlockingDeque<>();
+        private final List<Process> localWorkers = new ArrayList<>();
+        private final AtomicInteger liveWorkers = new AtomicInteger();
+        private final AtomicLong reassigned = new AtomicLong();
+        private volatile boolean closed;
+
+        /**
+         * @param port               port d'écoute (0 : port libre choisi par le système)
+         * @param leaseTimeoutMillis délai de réponse d'un travailleur à un bail
+         */
+        public Coordinator(int port, int leaseTimeoutMillis) throws IOException {
+            this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            this.leaseTimeoutMillis = leaseTimeoutMillis;
+            Thread acceptor = new Thread(this::acceptLoop, "coordinateur");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        public int port() {
+            return server.getLocalPort();
+        }
+
+        // Nombre de baux rendus à la file après la perte d'un travailleur.
+        public long reassignedLeases() {
+            return reassigned.get();
+        }
+
+        /**
+         * Lance count travailleurs dans des JVM locales, avec le même
+         * classpath que la JVM courante.
+         * @param count   nombre de processus
+         * @param threads threads de recherche par travailleur
+         */
+        public void startLocalWorkers(int count, int threads) throws IOException {
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            for (int i = 0; i < count; i++) {
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                    command.add("--add-modules=jdk.incubator.vector");
+                }
+                command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"),
+                        "DistributedKeySearch", "worker", "127.0.0.1", Integer.toString(port()),
+                        "threads=" + threads));
+                Process process = new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                localWorkers.add(process);
+            }
+        }
+
+        /**
+         * Meilleure clé parmi keys, répartie sur les travailleurs connectés.
+         *
+         * @param imagePath image brouillée (.png ou .raw), lisible par les travailleurs
+         * @param pearson   true pour Pearson (maximisé), false pour l'euclidien (minimisé)
+         * @param keys      clés candidates
+         * @param leaseSize nombre de clés par bail
+         * @return la même clé et le même score que le parcours exhaustif
+         */
+        public ParallelKeySearch.Result search(String imagePath, boolean pearson, int[] keys, int leaseSize)
+                throws InterruptedException {
+            if (keys.length == 0 || leaseSize < 1) {
+                throw new IllegalArgumentException("Aucune clé à évaluer");
+            }
+            int leases = (keys.length + leaseSize - 1) / leaseSize;
+            Job job = new Job(new File(imagePath).getAbsolutePath(), pearson, leases);
+            for (int i = 0; i < leases; i++) {
+                int from = i * leaseSize;
+                pending.add(new Lease(job, i, Arrays.copyOfRange(keys, from, Math.min(keys.length, from + leaseSize))));
+            }
+
+            long lastWorkerSeen = System.currentTimeMillis();
+            while (!job.remaining.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (liveWorkers.get() > 0) {
+                    lastWorkerSeen = System.currentTimeMillis();
+                } else if (System.currentTimeMillis() - lastWorkerSeen > NO_WORKER_TIMEOUT_MILLIS) {
+                    pending.removeIf(lease -> lease.job == job);
+                    throw new IllegalStateException("Plus aucun travailleur connecté");
+                }
+            }
+            String failure = job.failure();
+            if (failure != null) {
+                pending.removeIf(lease -> lease.job == job);
+                throw new IllegalStateException("Échec d'un travailleur (" + failure + ")");
+            }
+            return new ParallelKeySearch.Result(job.bestKey, job.bestScore);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            server.close();
+            for (Process process : localWorkers) {
+                try {
+                    if (!process.waitFor(2, TimeUnit.SECONDS)) {
+                        process.destroy();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    process.destroy();
+                }
+            }
+        }
+
+        private void acceptLoop() {
+            while (!closed) {
+                try {
+                    Socket socket = server.accept();
+                    Thread handler = new Thread(() -> serve(socket), "travailleur-" + socket.getPort());
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    if (!closed) {
+                        System.err.println("Connexion refusée: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        // Un thread par travailleur : un bail envoyé, sa réponse attendue, puis le suivant.
+        private void serve(Socket socket) {
+            liveWorkers.incrementAndGet();
+            Lease lease = null;
+            try (socket;
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+                socket.setSoTimeout(leaseTimeoutMillis);
+                while (true) {
+                    lease = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (lease == null) {
+                        if (closed) {
+                            out.writeByte(QUIT);
+                            out.flush();
+                            return;
+                        }
+                        continue;
+                    }
+                    out.writeByte(LEASE);
+                    out.writeInt(lease.id);
+                    out.writeUTF(lease.job.imagePath);
+                    out.writeBoolean(lease.job.pearson);
+                    out.writeDouble(lease.job.bound());
+                    out.writeInt(lease.keys.length);
+                    for (int key : lease.keys) {
+                        out.writeInt(key);
+                    }
+                    out.flush();
+
+                    byte reply = in.readByte();
+                    if ((reply != RESULT && reply != ERROR) || in.readInt() != lease.id) {
+                        throw new IOException("Réponse inattendue du travailleur");
+                    }
+                    if (reply == ERROR) {
+                        lease.job.fail(lease.id, in.readUTF());
+                        lease = null;
+                        continue;
+                    }
+                    int key = in.readInt();
+                    double score = in.readDouble();
+                    lease.job.merge(lease.id, key, score);
+                    lease = null;
+                }
+            } catch (IOException | InterruptedException e) {
+                if (lease != null) {
+                    // Travailleur mort ou trop lent : le bail passe en tête de file
+                    pending.addFirst(lease);
+                    reassigned.incrementAndGet();
+                    String cause = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                    System.err.println("Travailleur perdu (" + cause + "), bail " + lease.id
+                            + " réattribué");
+                }
+            } finally {
+                liveWorkers.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Travailleur : se connecte au coordinateur, évalue les baux reçus et
+     * renvoie leur meilleure clé, jusqu'au message de fin.
+     * @param host    adresse du coordinateur
+     * @param port    port du coordinateur
+     * @param threads threads de recherche
+     */
+    public static void runWorker(String host, int port, int threads) throws IOException {
+        String lumaPath = null;
+        LumaImage luma = null;
+        try (Socket socket = new Socket(host, port);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException | SocketException e) {
+                    return; // coordinateur arrêté
+                }
+                if (type == QUIT) {
+                    return;
+                }
+                if (type != LEASE) {
+                    throw new IOException("Message inconnu: " + type);
+                }
+                int id = in.readInt();
+                String imagePath = in.readUTF();
+                boolean pearson = in.readBoolean();
+                double bound = in.readDouble();
+                int[] keys = new int[in.readInt()];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = in.readInt();
+                }
+
+                ParallelKeySearch.Result best;
+                try {
+                    // Niveaux de gris gardés tant que l'image ne change pas
+                    if (!imagePath.equals(lumaPath)) {
+                        lumaPath = null;
+                        luma = loadLuma(new File(imagePath));
+                        lumaPath = imagePath;
+                    }
+                    best = ParallelKeySearch.searchBounded(keys, threads, !pearson, bound,
+                            BoundedSearch.scorers(luma, pearson));
+                } catch (Throwable e) {
+                    // Le coordinateur arrête la recherche ; le travailleur reste disponible pour la suivante
+                    out.writeByte(ERROR);
+                    out.writeInt(id);
+                    out.writeUTF(String.valueOf(e));
+                    out.flush();
+                    continue;
+                }
+
+                out.writeByte(RESULT);
+                out.writeInt(id);
+                out.writeInt(best == null ? -1 : best.key);
+                out.writeDouble(best == null ? bound : best.score);
+                out.flush();
+            }
+        }
+    }
+
+    // Niveaux de gris d'une image PNG (décodée) ou d'un conteneur brut (projeté).
+    static LumaImage loadLuma(File file) throws IOException {
+        if (RawImageFile.isRawFile(file)) {
+            try (RawImageFile raw = RawImageFile.open(file.toPath(), false)) {
+                return raw.toLuma();
+            }
+        }
+        // Le travailleur n'a besoin que des niveaux de gris : conversion pendant le décodage
+        return LumaDecoder.decode(file).luma;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3 || !args[0].equals("worker")) {
+            System.err.println("Usage: java DistributedKeySearch worker <hôte> <port> [threads=N]");
+            System.err.println("  (coordinateur : java keyBreak <image> <méthode> workers=N [lease=L])");
+            System.exit(1);
+        }
+        int threads = 1;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].startsWith("threads=")) {
+                threads = Integer.parseInt(args[i].substring("threads=".length()));
+                if (threads <= 0) {
+                    threads = ParallelKeySearch.defaultThreads();
+                }
+            }
+        }
+        runWorker(args[1], Integer.parseInt(args[2]), threads);
+    }
+}
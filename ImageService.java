@@ -0,0 +1,403 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.imageio.ImageIO;
+
+/**
+ * Service HTTP local de brouillage, débrouillage et cassage de clé.
+ *
+ * Une seule JVM traite toutes les requêtes : le chargement des classes, la
+ * compilation JIT et l'initialisation d'ImageIO ne sont payés qu'une fois.
+ *
+ *   POST /scramble?key=K     corps : image     réponse : PNG brouillé
+ *   POST /unscramble?key=K   corps : image     réponse : PNG débrouillé
+ *   POST /break?method=pearson|euclidean[&engine=rotation|bounded]
+ *                            corps : image     réponse : {"key": ..., "score": ...}
+ *   GET  /stats              compteurs et occupation des caches
+ *
+ * Chaque requête a son propre thread : un thread virtuel si la JVM en
+ * dispose (Java 21+), sinon un pool de threads qui grandit à la demande.
+ * Les recherches de clé, elles, passent par un pool fixe de threads
+ * plateforme (un par cœur par défaut). Une requête de brouillage,
+ * débrouillage ou cassage n'est acceptée que s'il reste une place (threads
+ * de recherche + file d'attente queue=N), prise avant de lire et de décoder
+ * son image ; sinon elle reçoit 503 et un en-tête Retry-After.
+ *
+ * Deux caches LRU restent chauds entre les requêtes : les niveaux de gris
+ * des images (clé : SHA-256 du fichier reçu), pour qu'une même image ne soit
+ * décodée qu'une fois, et les tables de permutation par (hauteur, clé).
+ */
+public class ImageService {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_QUEUE = 16;
+    private static final int DEFAULT_LUMA_CACHE = 16;
+    private static final int PERMUTATION_CACHE = 256;
+
+    /**
+     * Cache LRU borné en nombre d'entrées. La valeur est calculée hors du
+     * verrou : deux requêtes simultanées sur une même clé absente peuvent la
+     * calculer toutes les deux, la dernière écrite est gardée.
+     */
+    static final class LruCache<K, V> {
+        private final Map<K, V> map;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        LruCache(int capacity) {
+            this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        V get(K key, Function<K, V> loader) {
+            synchronized (map) {
+                V value = map.get(key);
+                if (value != null) {
+                    hits.incrementAndGet();
+                    return value;
+                }
+            }
+            misses.incrementAndGet();
+            V value = loader.apply(key);
+            synchronized (map) {
+                map.put(key, value);
+            }
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            synchronized (map) {
+                return map.size() + " entrées, " + hits.get() + " succès, " + misses.get() + " défauts";
+            }
+        }
+    }
+
+    // Requête refusée ou invalide : code HTTP et message.
+    static final class ServiceException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ServiceException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService requests;
+    private final ThreadPoolExecutor searches;
+    private final Semaphore admission;
+    private final LruCache<String, LumaImage> lumas;
+    private final LruCache<Long, int[]> permutations = new LruCache<>(PERMUTATION_CACHE);
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param port           port d'écoute (sur 127.0.0.1 uniquement)
+     * @param searchThreads  threads plateforme dédiés aux recherches de clé
+     * @param queue          requêtes admises au-delà des threads de recherche
+     * @param lumaCacheSize  nombre d'images en niveaux de gris gardées en cache
+     */
+    public ImageService(int port, int searchThreads, int queue, int lumaCacheSize) throws IOException {
+        this.requests = newRequestExecutor();
+        AtomicInteger counter = new AtomicInteger();
+        this.searches = new ThreadPoolExecutor(searchThreads, searchThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "recherche-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.admission = new Semaphore(searchThreads + queue);
+        this.lumas = new LruCache<>(lumaCacheSize);
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(requests);
+        server.createContext("/scramble", exchange -> handle(exchange, () -> admitted(() -> permute(exchange, false))));
+        server.createContext("/unscramble", exchange -> handle(exchange, () -> admitted(() -> permute(exchange, true))));
+        server.createContext("/break", exchange -> handle(exchange, () -> admitted(() -> breakKey(exchange))));
+        server.createContext("/stats", exchange -> handle(exchange, () -> stats(exchange)));
+    }
+
+    /**
+     * Un thread virtuel par tâche si la JVM en dispose (Java 21+). Le projet
+     * compile en Java 17 : la méthode est cherchée par réflexion, et à défaut
+     * un pool de threads plateforme réutilisables est créé.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        requests.shutdownNow();
+        searches.shutdownNow();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    // Réponse d'un point d'accès : type MIME et contenu.
+    private interface Handler {
+        Response run() throws Exception;
+    }
+
+    private static final class Response {
+        final String contentType;
+        final byte[] body;
+
+        Response(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Response text(String contentType, String body) {
+            return new Response(contentType + "; charset=utf-8", body.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        int status = 200;
+        Response response;
+        try {
+            response = handler.run();
+            served.incrementAndGet();
+        } catch (ServiceException e) {
+            status = e.status;
+            response = Response.text("text/plain", e.getMessage() + "\n");
+            if (status == 503) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            }
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            response = Response.text("text/plain", e.getMessage() + "\n");
+        } catch (Exception e) {
+            status = 500;
+            response = Response.text("text/plain", "Erreur interne: " + e + "\n");
+        }
+        exchange.getResponseHeaders().set("Content-Type", response.contentType);
+        exchange.sendResponseHeaders(status, response.body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response.body);
+        }
+    }
+
+    // POST /scramble et /unscramble : image reçue, lignes permutées, PNG renvoyé.
+    private Response permute(HttpExchange exchange, boolean unscramble) throws Exception {
+        requirePost(exchange);
+        Map<String, String> query = query(exchange);
+        int key = Integer.parseInt(require(query, "key")) & 0x7FFF;
+        BufferedImage image = decode(exchange.getRequestBody().readAllBytes());
+
+        int height = image.getHeight();
+        int[] perm = permutations.get(((long) height << 15) | key,
+                k -> Brouillimg.generatePermutation(height, key));
+        BufferedImage out = unscramble ? Brouillimg.unScrambleLines(image, perm)
+                : Brouillimg.scrambleLines(image, perm);
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        if (!ImageIO.write(out, "png", png)) {
+            throw new ServiceException(500, "Aucun writer PNG pour cette image (type " + out.getType() + ")");
+        }
+        return new Response("image/png", png.toByteArray());
+    }
+
+    // POST /break : meilleure clé de l'image reçue, calculée dans le pool de recherche.
+    private Response breakKey(HttpExchange exchange) throws Exception {
+        requirePost(exchange);
+        Map<String, String> query = query(exchange);
+        String method = query.getOrDefault("method", "pearson").toLowerCase();
+        boolean pearson = method.equals("pearson");
+        if (!pearson && !method.equals("euclidean") && !method.equals("euclidienne")) {
+            throw new IllegalArgumentException("Méthode inconnue: " + method);
+        }
+        String engine = query.getOrDefault("engine", "rotation").toLowerCase();
+        if (!engine.equals("rotation") && !engine.equals("bounded")) {
+            throw new IllegalArgumentException("Moteur inconnu: " + engine);
+        }
+
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        String hash = sha256(body);
+        // Seuls les niveaux de gris servent : conversion pendant le décodage (voir LumaDecoder)
+        LumaImage luma = lumas.get(hash, h -> {
+            try {
+                return LumaDecoder.decode(body).luma;
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Image illisible: " + e.getMessage());
+            }
+        });
+
+        long start = System.nanoTime();
+        ParallelKeySearch.Result result = submitSearch(() -> {
+            if (engine.equals("rotation")) {
+                return RotationSolver.search(luma, pearson, 1);
+            }
+            BoundedSearch.Result bounded = BoundedSearch.search(luma, pearson, 128, 256, 1);
+            return new ParallelKeySearch.Result(bounded.key, bounded.score);
+        });
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        String json = String.format(java.util.Locale.ROOT,
+                "{\"key\": %d, \"score\": %s, \"method\": \"%s\", \"engine\": \"%s\", \"image\": \"%s\", "
+                        + "\"millis\": %.3f}%n",
+                result.key, Double.toString(result.score), pearson ? "pearson" : "euclidean", engine, hash, millis);
+        return Response.text("application/json", json);
+    }
+
+    // GET /stats
+    private Response stats(HttpExchange exchange) {
+        String text = "Requêtes servies: " + served.get() + "\n"
+                + "Requêtes refusées (saturation): " + rejected.get() + "\n"
+                + "Recherches en cours: " + searches.getActiveCount() + ", en attente: " + searches.getQueue().size()
+                + "\n"
+                + "Places libres: " + admission.availablePermits() + "\n"
+                + "Cache niveaux de gris: " + lumas + "\n"
+                + "Cache permutations: " + permutations + "\n";
+        return Response.text("text/plain", text);
+    }
+
+    /**
+     * Admission : la requête n'est traitée que s'il reste une place (thread
+     * de recherche libre ou file d'attente), sinon 503 immédiatement. La place
+     * est prise avant de lire le corps : une requête refusée ne coûte ni
+     * lecture, ni hash, ni décodage. Elle est rendue une fois la réponse prête.
+     */
+    private Response admitted(Handler handler) throws Exception {
+        if (!admission.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new ServiceException(503, "Service saturé, réessayez plus tard");
+        }
+        try {
+            return handler.run();
+        } finally {
+            admission.release();
+        }
+    }
+
+    // Recherche exécutée dans le pool : le thread de la requête attend le résultat sans occuper de cœur.
+    private <T> T submitSearch(Callable<T> search) throws Exception {
+        Future<T> future = searches.submit(search);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private static BufferedImage decode(byte[] bytes) throws ServiceException {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+            if (image == null) {
+                throw new ServiceException(415, "Format d’image non reconnu");
+            }
+            return image;
+        } catch (IOException e) {
+            throw new ServiceException(400, "Image illisible: " + e.getMessage());
+        }
+    }
+
+    private static void requirePost(HttpExchange exchange) throws ServiceException {
+        if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+            throw new ServiceException(405, "Méthode HTTP attendue: POST");
+        }
+    }
+
+    private static String require(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Paramètre manquant: " + name);
+        }
+        return value;
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    // Même hash que LumaCache.contentHash pour le même fichier.
+    static String sha256(byte[] bytes) {
+        return LumaCache.hex(LumaCache.sha256().digest(bytes));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        int threads = ParallelKeySearch.defaultThreads();
+        int queue = DEFAULT_QUEUE;
+        int cache = DEFAULT_LUMA_CACHE;
+        for (String arg : args) {
+            if (arg.startsWith("port=")) {
+                port = Integer.parseInt(arg.substring("port=".length()));
+            } else if (arg.startsWith("threads=")) {
+                threads = Integer.parseInt(arg.substring("threads=".length()));
+                if (threads <= 0) {
+                    threads = ParallelKeySearch.defaultThreads();
+                }
+            } else if (arg.startsWith("queue=")) {
+                queue = Integer.parseInt(arg.substring("queue=".length()));
+            } else if (arg.startsWith("cache=")) {
+                cache = Integer.parseInt(arg.substring("cache=".length()));
+            } else {
+                System.err.println("Usage: java ImageService [port=P] [threads=N] [queue=Q] [cache=C]");
+                System.exit(1);
+            }
+        }
+
+        ImageService service = new ImageService(port, threads, queue, cache);
+        Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+        service.start();
+        System.out.println("Service démarré sur http://127.0.0.1:" + service.port()
+                + " (" + threads + " threads de recherche, file de " + queue + ")");
+    }
+}
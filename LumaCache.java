@@ -0,0 +1,291 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Properties;
+
+/**
+ * Cache sur disque des cassages de clé, indexé par le contenu de l'image
+ * (SHA-256 du fichier) : le même fichier, même renommé ou recopié, retrouve
+ * ses niveaux de gris et ses résultats d'une exécution à l'autre.
+ *
+ * Deux fichiers par image dans le répertoire du cache :
+ *
+ *   &lt;hash&gt;.luma        niveaux de gris et statistiques des lignes, relus
+ *                        par projection mémoire (FileChannel.map)
+ *   &lt;hash&gt;.properties  meilleure clé et score par méthode de recherche
+ *
+ * Format de &lt;hash&gt;.luma (entiers big-endian) :
+ *   0  "LUMA"            signature
+ *   4  short version     (1)
+ *   6  short drapeaux    bit 0 : statistiques des lignes présentes
+ *   8  int largeur
+ *   12 int hauteur
+ *   16 16 octets réservés
+ *   32 niveaux de gris   ligne par ligne (largeur x hauteur octets)
+ *   puis, aligné sur 8 : moyennes (hauteur doubles), normes (hauteur doubles)
+ *
+ * LumaImage et les noyaux de RowKernels travaillent sur un byte[] : la
+ * lecture n'est pas sans copie, mais se réduit à un get en bloc depuis la
+ * projection, sans décodage PNG/JPEG ni conversion en gris. Les moyennes et
+ * normes sont relues telles qu'enregistrées : les scores de Pearson restent
+ * identiques au bit près.
+ *
+ * Chaque fichier est écrit à côté sous un nom temporaire puis renommé : un
+ * lecteur (ou une exécution interrompue) ne voit jamais un fichier à moitié
+ * écrit. Un fichier illisible est traité comme absent.
+ */
+public class LumaCache {
+
+    // Répertoire utilisé par l'option cache sans valeur
+    public static final String DEFAULT_DIRECTORY = ".keybreak-cache";
+
+    private static final byte[] MAGIC = "LUMA".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int FLAG_STATS = 1;
+    // Taille des segments projetés pour le calcul du hash
+    private static final long HASH_CHUNK = 1L << 28;
+
+    /**
+     * Résultat enregistré pour une méthode : meilleure clé et son score.
+     */
+    public static final class Result {
+        public final int key;
+        public final double score;
+
+        Result(int key, double score) {
+            this.key = key;
+            this.score = score;
+        }
+    }
+
+    private final Path directory;
+    private final String hash;
+
+    private LumaCache(Path directory, String hash) {
+        this.directory = directory;
+        this.hash = hash;
+    }
+
+    /**
+     * Ouvre l'entrée du cache correspondant au contenu d'une image (le
+     * répertoire est créé au besoin).
+     *
+     * @param directory répertoire du cache
+     * @param image     fichier image (PNG, JPEG ou conteneur brut)
+     * @return entrée du cache de cette image
+     */
+    public static LumaCache open(Path directory, Path image) throws IOException {
+        Files.createDirectories(directory);
+        return new LumaCache(directory, contentHash(image));
+    }
+
+    /**
+     * SHA-256 du contenu d'un fichier, en hexadécimal. Le fichier est projeté
+     * en mémoire par segments et passé directement au condensé.
+     */
+    public static String contentHash(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += HASH_CHUNK) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(HASH_CHUNK, size - position)));
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    // Condensé SHA-256 (toujours disponible dans une JVM conforme).
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Condensé en hexadécimal minuscule : nom des fichiers du cache, clé du cache d'ImageService.
+    static String hex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+
+    // Hash du contenu de l'image.
+    public String hash() {
+        return hash;
+    }
+
+    /**
+     * Relit les niveaux de gris de l'image (et ses statistiques de lignes si
+     * elles ont été enregistrées).
+     *
+     * @return niveaux de gris, null s'ils ne sont pas en cache
+     */
+    public LumaImage loadLuma() throws IOException {
+        Path path = lumaPath();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (header.get(i) != MAGIC[i]) {
+                    return null;
+                }
+            }
+            int flags = header.getShort(6);
+            int width = header.getInt(8);
+            int height = header.getInt(12);
+            long pixels = (long) width * height;
+            if (header.getShort(4) != VERSION || width < 0 || height < 0 || pixels > Integer.MAX_VALUE) {
+                return null;
+            }
+            boolean hasStats = (flags & FLAG_STATS) != 0;
+            long statsStart = statsOffset(pixels);
+            if (size < (hasStats ? statsStart + 16L * height : HEADER_SIZE + pixels)) {
+                return null;
+            }
+            byte[] data = new byte[(int) pixels];
+            channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, pixels).get(data);
+            LumaImage luma = new LumaImage(width, height, data);
+            if (hasStats) {
+                DoubleBuffer stats = channel.map(FileChannel.MapMode.READ_ONLY, statsStart, 16L * height)
+                        .asDoubleBuffer();
+                double[] mean = new double[height];
+                double[] norm = new double[height];
+                stats.get(mean);
+                stats.get(norm);
+                luma.setRowStats(RowStats.of(width, mean, norm));
+            }
+            return luma;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Enregistre les niveaux de gris de l'image et les statistiques de ses
+     * lignes (calculées au besoin).
+     *
+     * @param luma niveaux de gris de l'image complète
+     */
+    public void storeLuma(LumaImage luma) throws IOException {
+        int width = luma.width();
+        int height = luma.height();
+        long pixels = (long) width * height;
+        long statsStart = statsOffset(pixels);
+        RowStats stats = luma.rowStats();
+        Path tmp = Files.createTempFile(directory, hash, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.put(MAGIC);
+                header.putShort((short) VERSION);
+                header.putShort((short) FLAG_STATS);
+                header.putInt(width);
+                header.putInt(height);
+                header.rewind();
+                writeFully(channel, header, 0);
+                writeFully(channel, ByteBuffer.wrap(luma.data(), 0, (int) pixels), HEADER_SIZE);
+                ByteBuffer values = ByteBuffer.allocate(16 * height);
+                for (int y = 0; y < height; y++) {
+                    values.putDouble(8 * y, stats.mean(y));
+                    values.putDouble(8 * (height + y), stats.norm(y));
+                }
+                writeFully(channel, values, statsStart);
+                channel.force(true);
+            }
+            Files.move(tmp, lumaPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Résultat déjà trouvé pour une méthode.
+     *
+     * @param method méthode et options qui changent le résultat (voir keyBreak)
+     * @return clé et score, null si la méthode n'a pas encore été cassée
+     */
+    public Result result(String method) throws IOException {
+        Properties results = loadResults();
+        String key = results.getProperty(method + ".key");
+        String score = results.getProperty(method + ".score");
+        if (key == null || score == null) {
+            return null;
+        }
+        try {
+            return new Result(Integer.parseInt(key), Double.parseDouble(score));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Enregistre la meilleure clé et son score pour une méthode. Le score est
+     * écrit par Double.toString, relu à l'identique.
+     */
+    public void storeResult(String method, int key, double score) throws IOException {
+        // Deux exécutions simultanées : la dernière à renommer son fichier l'emporte
+        Properties results = loadResults();
+        results.setProperty(method + ".key", Integer.toString(key));
+        results.setProperty(method + ".score", Double.toString(score));
+        Path tmp = Files.createTempFile(directory, hash, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                results.store(out, "Cassage de clé, image " + hash);
+            }
+            Files.move(tmp, resultsPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Properties loadResults() throws IOException {
+        Properties results = new Properties();
+        try (InputStream in = Files.newInputStream(resultsPath())) {
+            results.load(in);
+        } catch (NoSuchFileException e) {
+            // Aucun résultat pour cette image
+        }
+        return results;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // Début des statistiques : après les pixels, aligné sur 8 octets.
+    private static long statsOffset(long pixels) {
+        return (HEADER_SIZE + pixels + 7) & ~7L;
+    }
+
+    private Path lumaPath() {
+        return directory.resolve(hash + ".luma");
+    }
+
+    private Path resultsPath() {
+        return directory.resolve(hash + ".properties");
+    }
+}
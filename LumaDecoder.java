@@ -0,0 +1,215 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Décodage d'une image directement en niveaux de gris, pour les recherches
+ * de clé.
+ *
+ * ImageIO.read puis LumaImage.of parcourt l'image deux fois : le décodeur
+ * écrit toute l'image, puis la conversion la relit. Ici, un
+ * IIOReadUpdateListener convertit chaque ligne (par les tables de poids de
+ * RasterRows) dès que le décodeur l'a écrite, tant qu'elle est encore en
+ * cache. Le lecteur peut aussi ne décoder qu'une bande de colonnes et une
+ * colonne sur step (ImageReadParam.setSourceRegion / setSourceSubsampling) :
+ * les lignes restent toutes présentes, donc une permutation des lignes
+ * s'applique de la même façon, mais les scores sont calculés sur moins de
+ * pixels (comme pour coarse=F).
+ *
+ * Le lecteur remplit toujours sa propre image de destination, dans le format
+ * du fichier (3 octets par pixel pour un JPEG, pas d'ARGB) et réduite à la
+ * bande demandée. Un décodage bande de lignes par bande de lignes ferait
+ * reprendre le flux PNG ou JPEG depuis le début à chaque bande.
+ */
+public class LumaDecoder {
+
+    /**
+     * Image décodée : niveaux de gris, et l'image elle-même (bande de colonnes
+     * lue, dans le format du fichier).
+     */
+    public static final class Result {
+        public final LumaImage luma;
+        public final BufferedImage image;
+        // true si image est l'image complète (ni bande, ni sous-échantillonnage)
+        public final boolean complete;
+
+        Result(LumaImage luma, BufferedImage image, boolean complete) {
+            this.luma = luma;
+            this.image = image;
+            this.complete = complete;
+        }
+    }
+
+    /**
+     * Décode toute l'image d'un fichier en niveaux de gris.
+     *
+     * @param file image à lire
+     * @return niveaux de gris et image décodée
+     */
+    public static Result decode(File file) throws IOException {
+        return decode(file, 0, -1, 1);
+    }
+
+    /**
+     * Décode les colonnes x0..x1-1 d'une image, une colonne sur step, en
+     * niveaux de gris.
+     *
+     * @param file image à lire
+     * @param x0   première colonne lue
+     * @param x1   fin de la bande (exclue), -1 pour la largeur de l'image
+     * @param step pas entre deux colonnes lues (1 = toutes)
+     * @return niveaux de gris (largeur ceil((x1 - x0) / step)) et image décodée
+     */
+    public static Result decode(File file, int x0, int x1, int step) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) {
+                throw new IOException("Impossible d'ouvrir: " + file);
+            }
+            return decode(in, x0, x1, step);
+        }
+    }
+
+    /**
+     * Décode une image reçue en mémoire (corps d'une requête, par exemple).
+     *
+     * @param bytes contenu du fichier image
+     * @return niveaux de gris et image décodée
+     */
+    public static Result decode(byte[] bytes) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            return decode(in, 0, -1, 1);
+        }
+    }
+
+    private static Result decode(ImageInputStream in, int x0, int x1, int step) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            throw new IOException("Format d’image non reconnu");
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(in, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            int end = x1 < 0 ? width : x1;
+            if (x0 < 0 || end > width || x0 >= end || step < 1) {
+                throw new IllegalArgumentException("Bande de colonnes invalide: " + x0 + ":" + end
+                        + " (pas " + step + ") pour une largeur de " + width);
+            }
+            boolean complete = x0 == 0 && end == width && step == 1;
+            ImageReadParam param = reader.getDefaultReadParam();
+            if (!complete) {
+                param.setSourceRegion(new Rectangle(x0, 0, end - x0, height));
+                param.setSourceSubsampling(step, 1, 0, 0);
+            }
+            int lumaWidth = (end - x0 + step - 1) / step;
+            byte[] out = new byte[lumaWidth * height];
+
+            RowConverter converter = new RowConverter(out, lumaWidth, height);
+            reader.addIIOReadUpdateListener(converter);
+            BufferedImage image = reader.read(0, param);
+            converter.finish(image);
+            return new Result(new LumaImage(lumaWidth, height, out), image, complete);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Convertit les lignes signalées par le lecteur. Les images entrelacées
+     * (PNG Adam7, JPEG progressif) arrivent en plusieurs passes : elles sont
+     * converties en une fois à la fin du décodage.
+     */
+    private static final class RowConverter implements IIOReadUpdateListener {
+        private final byte[] out;
+        private final int width;
+        private final BitSet converted;
+        private BufferedImage image;
+        private RasterRows.LumaRows rows;
+        private boolean multiPass;
+
+        RowConverter(byte[] out, int width, int height) {
+            this.out = out;
+            this.width = width;
+            this.converted = new BitSet(height);
+        }
+
+        @Override
+        public void passStarted(ImageReader source, BufferedImage theImage, int pass, int minPass, int maxPass,
+                                int minX, int minY, int periodX, int periodY, int[] bands) {
+            if (maxPass > minPass) {
+                multiPass = true;
+            }
+        }
+
+        @Override
+        public void imageUpdate(ImageReader source, BufferedImage theImage, int minX, int minY, int width,
+                                int height, int periodX, int periodY, int[] bands) {
+            if (multiPass || minX != 0 || width != this.width || periodX != 1) {
+                return; // lignes incomplètes : converties à la fin
+            }
+            for (int y = minY; y < minY + height; y += periodY) {
+                converter(theImage).convert(y, y + 1, out, y * this.width);
+                converted.set(y);
+            }
+        }
+
+        // Lignes que le lecteur n'a pas signalées (ou toutes, après plusieurs passes).
+        void finish(BufferedImage decoded) {
+            if (decoded.getWidth() != width) {
+                throw new IllegalStateException("Largeur décodée inattendue: " + decoded.getWidth());
+            }
+            if (multiPass || decoded != image) {
+                converted.clear();
+            }
+            RasterRows.LumaRows all = converter(decoded);
+            int height = decoded.getHeight();
+            for (int y = converted.nextClearBit(0); y < height; y = converted.nextClearBit(y)) {
+                int next = converted.nextSetBit(y);
+                int end = next < 0 ? height : next;
+                all.convert(y, end, out, y * width);
+                converted.set(y, end);
+            }
+        }
+
+        private RasterRows.LumaRows converter(BufferedImage theImage) {
+            if (theImage != image) {
+                image = theImage;
+                rows = RasterRows.lumaRows(theImage);
+            }
+            return rows;
+        }
+
+        @Override
+        public void passComplete(ImageReader source, BufferedImage theImage) {
+        }
+
+        @Override
+        public void thumbnailPassStarted(ImageReader source, BufferedImage theThumbnail, int pass, int minPass,
+                                         int maxPass, int minX, int minY, int periodX, int periodY, int[] bands) {
+        }
+
+        @Override
+        public void thumbnailUpdate(ImageReader source, BufferedImage theThumbnail, int minX, int minY, int width,
+                                    int height, int periodX, int periodY, int[] bands) {
+        }
+
+        @Override
+        public void thumbnailPassComplete(ImageReader source, BufferedImage theThumbnail) {
+        }
+    }
+}
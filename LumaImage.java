@@ -0,0 +1,217 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Image en niveaux de gris stockée dans un seul tableau d'octets, ligne par
+ * ligne (la ligne y commence à l'indice y * width).
+ *
+ * Par rapport à un int[][] : 1 octet par pixel au lieu de 4, pas d'en-tête
+ * d'objet par ligne, et des lignes contiguës en mémoire. Les valeurs 0..255
+ * sont stockées telles quelles dans des byte et relues avec & 0xFF.
+ *
+ * Les noyaux (somme, produit scalaire, somme des carrés des différences)
+ * accumulent en entiers long : ils sont exacts et donnent les mêmes sommes que
+ * sur la matrice int[][] équivalente.
+ */
+public class LumaImage {
+
+    // Côté des blocs de transpose (64 x 64 octets : 4 Ko lus et 4 Ko écrits)
+    private static final int TRANSPOSE_BLOCK = 64;
+
+    private final int width;
+    private final int height;
+    private final byte[] data;
+    // Statistiques des lignes pour Pearson, calculées à la première demande
+    private volatile RowStats rowStats;
+
+    /**
+     * @param width  largeur (pixels par ligne)
+     * @param height hauteur (nombre de lignes)
+     * @param data   niveaux de gris, ligne par ligne (width * height octets)
+     */
+    public LumaImage(int width, int height, byte[] data) {
+        if ((long) width * height != data.length) {
+            throw new IllegalArgumentException("Taille des données <> largeur x hauteur");
+        }
+        this.width = width;
+        this.height = height;
+        this.data = data;
+    }
+
+    /**
+     * Convertit une image en niveaux de gris (même formule que rgb2gl).
+     *
+     * @param img image d'entrée
+     * @return image en niveaux de gris
+     */
+    public static LumaImage of(BufferedImage img) {
+        return RasterRows.toLuma(img);
+    }
+
+    /**
+     * Construit l'image à partir d'une matrice de niveaux de gris (0-255).
+     *
+     * @param matrix matrice issue de rgb2gl
+     * @return image en niveaux de gris
+     */
+    public static LumaImage fromMatrix(int[][] matrix) {
+        int height = matrix.length;
+        int width = height > 0 ? matrix[0].length : 0;
+        long pixels = (long) width * height;
+        if (pixels > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Image trop grande pour les niveaux de gris en mémoire: "
+                    + width + "x" + height + " (" + pixels + " pixels, au plus " + Integer.MAX_VALUE + ")");
+        }
+        byte[] data = new byte[(int) pixels];
+        for (int y = 0; y < height; y++) {
+            int[] line = matrix[y];
+            int off = y * width;
+            for (int x = 0; x < width; x++) {
+                data[off + x] = (byte) line[x];
+            }
+        }
+        return new LumaImage(width, height, data);
+    }
+
+    /**
+     * Réduit la largeur d'un facteur factor : chaque pixel de sortie est la
+     * moyenne arrondie de factor colonnes voisines (la dernière colonne peut
+     * en regrouper moins). Les lignes restent entières : une permutation de
+     * lignes s'applique de la même façon aux deux images.
+     *
+     * @param factor nombre de colonnes moyennées (1 = copie)
+     * @return image réduite
+     */
+    public LumaImage averageColumns(int factor) {
+        if (factor < 1) {
+            throw new IllegalArgumentException("Facteur invalide: " + factor);
+        }
+        int coarseWidth = (width + factor - 1) / factor;
+        byte[] coarse = new byte[coarseWidth * height];
+        for (int y = 0; y < height; y++) {
+            int src = y * width;
+            int dst = y * coarseWidth;
+            for (int cx = 0; cx < coarseWidth; cx++) {
+                int x0 = cx * factor;
+                int n = Math.min(factor, width - x0);
+                int sum = 0;
+                for (int x = x0; x < x0 + n; x++) {
+                    sum += data[src + x] & 0xFF;
+                }
+                coarse[dst + cx] = (byte) ((sum + n / 2) / n);
+            }
+        }
+        return new LumaImage(coarseWidth, height, coarse);
+    }
+
+    /**
+     * Image transposée : la colonne x devient la ligne x. Une permutation des
+     * colonnes de l'image est une permutation des lignes de sa transposée, et
+     * se casse donc avec les mêmes recherches.
+     *
+     * Parcours par blocs de TRANSPOSE_BLOCK x TRANSPOSE_BLOCK pixels : les
+     * lignes lues et les lignes écrites d'un bloc restent en cache, au lieu
+     * d'écrire une colonne entière (un octet par ligne de sortie) à chaque
+     * ligne lue.
+     *
+     * @return image de largeur height et de hauteur width
+     */
+    public LumaImage transpose() {
+        byte[] out = new byte[data.length];
+        for (int y0 = 0; y0 < height; y0 += TRANSPOSE_BLOCK) {
+            int y1 = Math.min(height, y0 + TRANSPOSE_BLOCK);
+            for (int x0 = 0; x0 < width; x0 += TRANSPOSE_BLOCK) {
+                int x1 = Math.min(width, x0 + TRANSPOSE_BLOCK);
+                for (int y = y0; y < y1; y++) {
+                    int src = y * width;
+                    for (int x = x0; x < x1; x++) {
+                        out[x * height + y] = data[src + x];
+                    }
+                }
+            }
+        }
+        return new LumaImage(height, width, out);
+    }
+
+    /**
+     * Moyenne et norme de chaque ligne (RowStats), calculées une seule fois
+     * pour cette image même si plusieurs recherches les demandent.
+     */
+    public RowStats rowStats() {
+        RowStats stats = rowStats;
+        if (stats == null) {
+            // Deux threads peuvent calculer en même temps : résultats identiques
+            stats = RowStats.compute(this);
+            rowStats = stats;
+        }
+        return stats;
+    }
+
+    // Statistiques déjà connues (relues dans le cache), vérifiées contre les dimensions.
+    void setRowStats(RowStats stats) {
+        if (stats.width() != width || stats.height() != height) {
+            throw new IllegalArgumentException("Statistiques d'une autre image");
+        }
+        rowStats = stats;
+    }
+
+    // Matrice int[][] équivalente (format de rgb2gl).
+    public int[][] toMatrix() {
+        int[][] matrix = new int[height][width];
+        for (int y = 0; y < height; y++) {
+            int off = y * width;
+            for (int x = 0; x < width; x++) {
+                matrix[y][x] = data[off + x] & 0xFF;
+            }
+        }
+        return matrix;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    // Tableau des données (partagé, non copié).
+    public byte[] data() {
+        return data;
+    }
+
+    // Indice du premier pixel de la ligne y dans data().
+    public int offset(int y) {
+        return y * width;
+    }
+
+    // Niveau de gris du pixel (x, y).
+    public int get(int x, int y) {
+        return data[y * width + x] & 0xFF;
+    }
+
+    // Somme des niveaux de gris de la ligne y.
+    public long sum(int y) {
+        return RowKernels.sum(data, y * width, width);
+    }
+
+    // Somme des produits des lignes a et b.
+    public long dot(int a, int b) {
+        return RowKernels.dot(data, a * width, b * width, width);
+    }
+
+    // Somme des carrés des différences entre les lignes a et b.
+    public long sumSquaredDiff(int a, int b) {
+        return RowKernels.sumSquaredDiff(data, a * width, b * width, width);
+    }
+
+    // Distance euclidienne entre les lignes a et b (identique à keyBreak.euclideanDistance).
+    public double euclideanDistance(int a, int b) {
+        double sum = sumSquaredDiff(a, b);
+        return Math.sqrt(sum);
+    }
+}
@@ -0,0 +1,352 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Recherche parallèle de la meilleure clé sur un intervalle de clés.
+ *
+ * L'intervalle est découpé en blocs contigus traités par un pool de threads.
+ * Chaque thread crée son propre KeyScorer (et donc ses propres tampons) une
+ * seule fois, puis évalue les clés de ses blocs sans allocation. Chaque bloc
+ * renvoie son meilleur candidat ; la fusion se fait après coup, dans l'ordre
+ * croissant des blocs et avec la même comparaison stricte que la boucle
+ * séquentielle : en cas d'égalité, la plus petite clé l'emporte, exactement
+ * comme en séquentiel.
+ */
+public class ParallelKeySearch {
+
+    // Nombre de blocs par thread, pour équilibrer la charge entre les threads
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    // Évalue une clé. Une instance n'est jamais partagée entre deux threads.
+    public interface KeyScorer {
+        double score(int key);
+    }
+
+    /**
+     * Évalue une clé avec une borne : dès que la clé ne peut plus faire mieux
+     * que bound, le score peut être abandonné et une valeur strictement moins
+     * bonne que bound est renvoyée.
+     */
+    public interface BoundedKeyScorer extends KeyScorer {
+        double score(int key, double bound);
+    }
+
+    // Meilleure clé trouvée et son score.
+    public static final class Result {
+        public final int key;
+        public final double score;
+
+        Result(int key, double score) {
+            this.key = key;
+            this.score = score;
+        }
+    }
+
+    // Nombre de threads par défaut : un par cœur disponible.
+    public static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Cherche la meilleure clé de [fromKey, toKey).
+     *
+     * @param fromKey       première clé testée (incluse)
+     * @param toKey         dernière clé testée (exclue)
+     * @param threads       nombre de threads (1 = séquentiel dans le thread appelant)
+     * @param minimize      true pour garder le plus petit score, false pour le plus grand
+     * @param scorerFactory fabrique appelée une fois par thread
+     * @return la meilleure clé, identique à celle d'un parcours séquentiel
+     */
+    public static Result search(int fromKey, int toKey, int threads, boolean minimize,
+                                Supplier<KeyScorer> scorerFactory) {
+        if (toKey <= fromKey) {
+            throw new IllegalArgumentException("Intervalle de clés vide");
+        }
+        if (threads <= 1) {
+            return scanRange(fromKey, toKey, minimize, scorerFactory.get());
+        }
+
+        int total = toKey - fromKey;
+        int chunks = Math.min(total, threads * CHUNKS_PER_THREAD);
+        ThreadLocal<KeyScorer> scorers = ThreadLocal.withInitial(scorerFactory);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>(chunks);
+            for (int c = 0; c < chunks; c++) {
+                int start = fromKey + (int) ((long) total * c / chunks);
+                int end = fromKey + (int) ((long) total * (c + 1) / chunks);
+                futures.add(pool.submit(() -> scanRange(start, end, minimize, scorers.get())));
+            }
+
+            // Fusion dans l'ordre des blocs : même résultat que le parcours séquentiel
+            Result best = null;
+            for (Future<Result> future : futures) {
+                Result r = future.get();
+                if (best == null || isBetter(r.score, best.score, minimize)) {
+                    best = r;
+                }
+            }
+            return best;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Recherche interrompue", e);
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new IllegalStateException("Échec d'un thread de recherche", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Cherche la meilleure clé parmi keys, dans l'ordre donné, avec élagage.
+     *
+     * La meilleure valeur connue est partagée entre les threads et sert de
+     * borne à chaque évaluation : un ordre qui place les clés prometteuses en
+     * tête resserre la borne tôt. Une clé abandonnée a un score strictement
+     * moins bon que la borne et ne peut donc pas gagner ; à score égal, la plus
+     * petite clé l'emporte. Le résultat est celui du parcours exhaustif, quel
+     * que soit l'ordre ou le nombre de threads.
+     *
+     * @param keys          clés à évaluer, les plus prometteuses en tête
+     * @param threads       nombre de threads (1 = séquentiel dans le thread appelant)
+     * @param minimize      true pour garder le plus petit score, false pour le plus grand
+     * @param scorerFactory fabrique appelée une fois par thread
+     * @return la meilleure clé
+     */
+    public static Result searchBounded(int[] keys, int threads, boolean minimize,
+                                       Supplier<? extends BoundedKeyScorer> scorerFactory) {
+        double worst = minimize ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        return searchBounded(keys, threads, minimize, worst, scorerFactory);
+    }
+
+    /**
+     * Variante de searchBounded partant d'une borne déjà connue (meilleur
+     * score trouvé ailleurs, par un autre processus par exemple) : seules les
+     * clés au moins aussi bonnes que initialBound sont gardées.
+     *
+     * @return la meilleure clé, ou null si toutes sont strictement moins bonnes que initialBound
+     */
+    public static Result searchBounded(int[] keys, int threads, boolean minimize, double initialBound,
+                                       Supplier<? extends BoundedKeyScorer> scorerFactory) {
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("Aucune clé à évaluer");
+        }
+        AtomicLong bound = new AtomicLong(Double.doubleToLongBits(initialBound));
+        if (threads <= 1) {
+            return scanKeys(keys, 0, keys.length, minimize, bound, scorerFactory.get());
+        }
+
+        int chunks = Math.min(keys.length, threads * CHUNKS_PER_THREAD);
+        ThreadLocal<BoundedKeyScorer> scorers = ThreadLocal.withInitial(scorerFactory);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>(chunks);
+            for (int c = 0; c < chunks; c++) {
+                int start = (int) ((long) keys.length * c / chunks);
+                int end = (int) ((long) keys.length * (c + 1) / chunks);
+                futures.add(pool.submit(() -> scanKeys(keys, start, end, minimize, bound, scorers.get())));
+            }
+            Result best = null;
+            for (Future<Result> future : futures) {
+                Result r = future.get();
+                if (r != null && (best == null || isBetterOrTie(r, best, minimize))) {
+                    best = r;
+                }
+            }
+            return best;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Recherche interrompue", e);
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new IllegalStateException("Échec d'un thread de recherche", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Évalue keys[start..end) avec la borne partagée ; null si toutes les clés ont été abandonnées.
+    private static Result scanKeys(int[] keys, int start, int end, boolean minimize, AtomicLong bound,
+                                   BoundedKeyScorer scorer) {
+        Result best = null;
+        for (int i = start; i < end; i++) {
+            double current = Double.longBitsToDouble(bound.get());
+            double score = scorer.score(keys[i], current);
+            if (isBetter(current, score, minimize)) {
+                continue; // abandonnée : strictement moins bonne que la borne
+            }
+            Result candidate = new Result(keys[i], score);
+            if (best == null || isBetterOrTie(candidate, best, minimize)) {
+                best = candidate;
+            }
+            // Resserre la borne partagée
+            long seen;
+            while (isBetter(score, Double.longBitsToDouble(seen = bound.get()), minimize)
+                    && !bound.compareAndSet(seen, Double.doubleToLongBits(score))) {
+                // un autre thread a modifié la borne entre-temps : on recommence
+            }
+        }
+        return best;
+    }
+
+    // Meilleur score, ou score égal avec une plus petite clé.
+    private static boolean isBetterOrTie(Result r, Result best, boolean minimize) {
+        return isBetter(r.score, best.score, minimize) || (r.score == best.score && r.key < best.key);
+    }
+
+    /**
+     * Score de chaque clé de keys (scores[i] est celui de keys[i]).
+     *
+     * @param keys          clés à évaluer
+     * @param threads       nombre de threads (1 = séquentiel dans le thread appelant)
+     * @param scorerFactory fabrique appelée une fois par thread
+     * @return les scores, dans l'ordre de keys
+     */
+    public static double[] scoreAll(int[] keys, int threads, Supplier<? extends KeyScorer> scorerFactory) {
+        double[] scores = new double[keys.length];
+        if (threads <= 1 || keys.length < 2) {
+            KeyScorer scorer = scorerFactory.get();
+            for (int i = 0; i < keys.length; i++) {
+                scores[i] = scorer.score(keys[i]);
+            }
+            return scores;
+        }
+
+        int chunks = Math.min(keys.length, threads * CHUNKS_PER_THREAD);
+        ThreadLocal<KeyScorer> scorers = ThreadLocal.withInitial(scorerFactory);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(chunks);
+            for (int c = 0; c < chunks; c++) {
+                int start = (int) ((long) keys.length * c / chunks);
+                int end = (int) ((long) keys.length * (c + 1) / chunks);
+                futures.add(pool.submit(() -> {
+                    KeyScorer scorer = scorers.get();
+                    for (int i = start; i < end; i++) {
+                        scores[i] = scorer.score(keys[i]);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return scores;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Recherche interrompue", e);
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new IllegalStateException("Échec d'un thread de recherche", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Les k meilleures clés de keys, de la meilleure à la moins bonne (à score
+     * égal, la plus petite clé d'abord).
+     *
+     * Chaque bloc garde ses k meilleurs candidats dans un tas dont la racine
+     * est le moins bon ; si le scorer accepte une borne (BoundedKeyScorer), le
+     * score de cette racine lui est passé et les clés qui ne peuvent pas entrer
+     * dans le tas sont abandonnées en cours de route.
+     *
+     * @param keys          clés à évaluer
+     * @param k             nombre de clés gardées
+     * @param threads       nombre de threads (1 = séquentiel dans le thread appelant)
+     * @param minimize      true pour garder les plus petits scores, false pour les plus grands
+     * @param scorerFactory fabrique appelée une fois par thread
+     * @return au plus k résultats, triés
+     */
+    public static Result[] searchTopK(int[] keys, int k, int threads, boolean minimize,
+                                      Supplier<? extends KeyScorer> scorerFactory) {
+        if (keys.length == 0 || k < 1) {
+            throw new IllegalArgumentException("Aucune clé à évaluer");
+        }
+        List<Result> merged = new ArrayList<>();
+        if (threads <= 1) {
+            merged.addAll(topKRange(keys, 0, keys.length, k, minimize, scorerFactory.get()));
+        } else {
+            int chunks = Math.min(keys.length, threads * CHUNKS_PER_THREAD);
+            ThreadLocal<KeyScorer> scorers = ThreadLocal.withInitial(scorerFactory);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<List<Result>>> futures = new ArrayList<>(chunks);
+                for (int c = 0; c < chunks; c++) {
+                    int start = (int) ((long) keys.length * c / chunks);
+                    int end = (int) ((long) keys.length * (c + 1) / chunks);
+                    futures.add(pool.submit(() -> topKRange(keys, start, end, k, minimize, scorers.get())));
+                }
+                for (Future<List<Result>> future : futures) {
+                    merged.addAll(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Recherche interrompue", e);
+            } catch (java.util.concurrent.ExecutionException e) {
+                throw new IllegalStateException("Échec d'un thread de recherche", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        merged.sort(bestFirst(minimize));
+        return merged.subList(0, Math.min(k, merged.size())).toArray(new Result[0]);
+    }
+
+    // k meilleurs candidats de keys[start..end), dans un tas borné.
+    private static List<Result> topKRange(int[] keys, int start, int end, int k, boolean minimize,
+                                          KeyScorer scorer) {
+        Comparator<Result> bestFirst = bestFirst(minimize);
+        PriorityQueue<Result> heap = new PriorityQueue<>(k + 1, bestFirst.reversed());
+        BoundedKeyScorer bounded = scorer instanceof BoundedKeyScorer ? (BoundedKeyScorer) scorer : null;
+        double worst = minimize ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        for (int i = start; i < end; i++) {
+            double bound = heap.size() < k ? worst : heap.peek().score;
+            double score = bounded != null ? bounded.score(keys[i], bound) : scorer.score(keys[i]);
+            Result candidate = new Result(keys[i], score);
+            if (heap.size() < k) {
+                heap.add(candidate);
+            } else if (bestFirst.compare(candidate, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+        return new ArrayList<>(heap);
+    }
+
+    // Ordre « meilleur d'abord » : score, puis plus petite clé.
+    private static Comparator<Result> bestFirst(boolean minimize) {
+        return (a, b) -> {
+            int c = minimize ? Double.compare(a.score, b.score) : Double.compare(b.score, a.score);
+            return c != 0 ? c : Integer.compare(a.key, b.key);
+        };
+    }
+
+    // Parcourt séquentiellement [start, end) et renvoie le premier meilleur score.
+    private static Result scanRange(int start, int end, boolean minimize, KeyScorer scorer) {
+        int bestKey = start;
+        double bestScore = scorer.score(start);
+        for (int key = start + 1; key < end; key++) {
+            double score = scorer.score(key);
+            if (isBetter(score, bestScore, minimize)) {
+                bestScore = score;
+                bestKey = key;
+            }
+        }
+        return new Result(bestKey, bestScore);
+    }
+
+    private static boolean isBetter(double score, double best, boolean minimize) {
+        return minimize ? score < best : score > best;
+    }
+}
@@ -1,4 +1,10 @@
-import java.util.function.Function;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
 
 public class Profiler {
@@ -15,6 +21,224 @@ public class Profiler {
         return (end - start) / 1e9; // Retourne le temps en secondes
     }
 
+    /**
+     * Mesure une méthode sur plusieurs exécutions, après des exécutions de
+     * chauffe (compilation JIT) non comptées.
+     * @param name       nom de la mesure (affiché)
+     * @param warmup     nombre d'exécutions de chauffe
+     * @param iterations nombre d'exécutions mesurées (au moins 1)
+     * @param method     la méthode à exécuter
+     * @return les durées et allocations de chaque exécution mesurée, et le
+     *         résultat de la dernière : inutile de relancer la méthode pour
+     *         l'obtenir
+     */
+    public static <T> Measurement<T> measure(String name, int warmup, int iterations, Supplier<T> method) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Au moins une exécution mesurée");
+        }
+        for (int i = 0; i < warmup; i++) {
+            method.get();
+        }
+        long[] nanos = new long[iterations];
+        long[] bytes = new long[iterations];
+        T result = null;
+        for (int i = 0; i < iterations; i++) {
+            long bytes0 = allocatedBytes();
+            long start = System.nanoTime();
+            result = method.get();
+            nanos[i] = System.nanoTime() - start;
+            bytes[i] = allocatedBytes() - bytes0;
+        }
+        return new Measurement<>(name, result, nanos, bytes);
+    }
+
+    /**
+     * Mesure une seule exécution, sans chauffe.
+     * @param name   nom de la mesure
+     * @param method la méthode à exécuter
+     * @return la mesure et le résultat de la méthode
+     */
+    public static <T> Measurement<T> measure(String name, Supplier<T> method) {
+        return measure(name, 0, 1, method);
+    }
+
+    /**
+     * Octets alloués jusqu'ici par le thread courant (-1 si la JVM ne sait
+     * pas les compter). Les allocations des autres threads (recherche
+     * parallèle) ne sont pas comptées.
+     * @return octets alloués par le thread courant
+     */
+    public static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+            if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) {
+                return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Durées et allocations des exécutions mesurées d'une méthode.
+     */
+    public static final class Measurement<T> {
+        public final String name;
+        public final T result;
+        private final long[] sortedNanos;
+        private final long[] bytes;
+
+        Measurement(String name, T result, long[] nanos, long[] bytes) {
+            this.name = name;
+            this.result = result;
+            this.sortedNanos = nanos.clone();
+            Arrays.sort(this.sortedNanos);
+            this.bytes = bytes;
+        }
+
+        public int iterations() {
+            return sortedNanos.length;
+        }
+
+        public double minSeconds() {
+            return sortedNanos[0] / 1e9;
+        }
+
+        public double maxSeconds() {
+            return sortedNanos[sortedNanos.length - 1] / 1e9;
+        }
+
+        public double medianSeconds() {
+            return percentileSeconds(50);
+        }
+
+        /**
+         * Centile par rang le plus proche (p = 90 : durée sous laquelle se
+         * trouvent 90 % des exécutions).
+         * @param p centile entre 0 et 100
+         * @return durée en secondes
+         */
+        public double percentileSeconds(double p) {
+            int rank = (int) Math.ceil(p / 100.0 * sortedNanos.length);
+            return sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, rank - 1))] / 1e9;
+        }
+
+        // Octets alloués par exécution, en moyenne (-1 si non mesurable).
+        public long meanAllocatedBytes() {
+            long total = 0;
+            for (long b : bytes) {
+                if (b < 0) {
+                    return -1;
+                }
+                total += b;
+            }
+            return total / bytes.length;
+        }
+
+        @Override
+        public String toString() {
+            String times = iterations() == 1
+                    ? String.format("%.3f ms", minSeconds() * 1000)
+                    : String.format("min %.3f / médiane %.3f / p90 %.3f / p99 %.3f / max %.3f ms (%d exécutions)",
+                            minSeconds() * 1000, medianSeconds() * 1000, percentileSeconds(90) * 1000,
+                            percentileSeconds(99) * 1000, maxSeconds() * 1000, iterations());
+            long alloc = meanAllocatedBytes();
+            return name + ": " + times + (alloc >= 0 ? ", " + formatBytes(alloc) + " alloués" : "");
+        }
+    }
+
+    /**
+     * Tâche chronométrée par Phases.time, qui peut lever une exception.
+     */
+    public interface Task<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * Phases nommées et imbriquées d'un traitement (décodage, niveaux de
+     * gris, recherche, encodage...), avec durée et octets alloués par le
+     * thread courant. Une phase appelée plusieurs fois au même niveau est
+     * cumulée. À utiliser depuis un seul thread.
+     */
+    public static final class Phases {
+        private final Node root = new Node("total");
+        private Node current = root;
+
+        /**
+         * Exécute une phase à l'intérieur de la phase en cours.
+         * @param name nom de la phase
+         * @param task travail de la phase
+         * @return le résultat de la tâche
+         */
+        public <T, E extends Exception> T time(String name, Task<T, E> task) throws E {
+            Node parent = current;
+            Node node = parent.children.computeIfAbsent(name, Node::new);
+            current = node;
+            long bytes0 = allocatedBytes();
+            long start = System.nanoTime();
+            try {
+                return task.run();
+            } finally {
+                node.nanos += System.nanoTime() - start;
+                node.bytes += bytes0 < 0 ? 0 : allocatedBytes() - bytes0;
+                node.count++;
+                current = parent;
+            }
+        }
+
+        // Durée cumulée d'une phase de premier niveau, en secondes (0 si absente).
+        public double seconds(String name) {
+            Node node = root.children.get(name);
+            return node == null ? 0 : node.nanos / 1e9;
+        }
+
+        /**
+         * Une ligne par phase, indentée selon l'imbrication.
+         * @return le rapport
+         */
+        public String report() {
+            List<String> lines = new ArrayList<>();
+            for (Node child : root.children.values()) {
+                child.report(lines, "");
+            }
+            return String.join(System.lineSeparator(), lines);
+        }
+    }
+
+    private static final class Node {
+        final String name;
+        final Map<String, Node> children = new LinkedHashMap<>();
+        long nanos;
+        long bytes;
+        int count;
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        void report(List<String> lines, String indent) {
+            lines.add(String.format("%s%-12s %10.3f ms  %10s%s", indent, name, nanos / 1e6, formatBytes(bytes),
+                    count > 1 ? "  (" + count + " fois)" : ""));
+            for (Node child : children.values()) {
+                child.report(lines, indent + "  ");
+            }
+        }
+    }
+
+    // Taille lisible : octets, Ko, Mo ou Go.
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " o";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f Ko", bytes / 1024.0);
+        }
+        if (bytes < 1024L * 1024 * 1024) {
+            return String.format("%.1f Mo", bytes / (1024.0 * 1024));
+        }
+        return String.format("%.1f Go", bytes / (1024.0 * 1024 * 1024));
+    }
+
     /**
      * Si clock0 est >0, retourne une chaîne de caractères
      * représentant la différence de temps depuis clock0.
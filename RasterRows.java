@@ -0,0 +1,400 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Accès aux lignes d'une image directement par son Raster / DataBuffer.
+ *
+ * getRGB / setRGB pixel par pixel passent à chaque appel par la conversion du
+ * ColorModel. Ici, les lignes sont copiées en bloc (System.arraycopy quand le
+ * DataBuffer le permet, getDataElements / setDataElements sinon) et l'image de
+ * sortie garde le type et le ColorModel de l'image source.
+ */
+public class RasterRows {
+
+    /**
+     * Crée une image vide de même type, même ColorModel et mêmes dimensions.
+     *
+     * @param src image modèle
+     * @return nouvelle image compatible
+     */
+    public static BufferedImage createCompatible(BufferedImage src) {
+        ColorModel cm = src.getColorModel();
+        WritableRaster raster = src.getRaster().createCompatibleWritableRaster(src.getWidth(), src.getHeight());
+        return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Copie les lignes de src dans dst : la ligne y de dst reçoit la ligne
+     * srcRows[y] de src. Une ligne sans source (srcRows[y] = -1, voir invert)
+     * n'est pas écrite et reste vide, comme au brouillage d'origine.
+     *
+     * @param src     image source
+     * @param dst     image destination (compatible avec src)
+     * @param srcRows ligne source de chaque ligne destination, ou -1
+     * @param threads nombre de threads (1 = séquentiel)
+     */
+    public static void copyRows(BufferedImage src, BufferedImage dst, int[] srcRows, int threads) {
+        int height = src.getHeight();
+        if (srcRows.length != height || dst.getHeight() != height || dst.getWidth() != src.getWidth()) {
+            throw new IllegalArgumentException("Taille d'image <> taille permutation");
+        }
+        WritableRaster in = src.getRaster();
+        WritableRaster out = dst.getRaster();
+        RowCopy copy = directCopy(in, out);
+        if (copy == null) {
+            copy = new ElementsCopy(in, out);
+        }
+        RowCopy task = copy;
+
+        if (threads <= 1) {
+            for (int y = 0; y < height; y++) {
+                if (srcRows[y] >= 0) {
+                    task.copy(srcRows[y], y);
+                }
+            }
+            return;
+        }
+        // Chaque ligne destination est écrite par un seul thread : pas de conflit
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> IntStream.range(0, height).parallel()
+                    .filter(y -> srcRows[y] >= 0)
+                    .forEach(y -> task.copy(srcRows[y], y))).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Permute les lignes de img sur place : la ligne y reçoit l'ancienne
+     * ligne srcRows[y]. Aucune seconde image n'est allouée.
+     *
+     * La permutation est parcourue cycle par cycle : la première ligne du
+     * cycle est mise de côté dans un tampon d'une ligne, chaque ligne du cycle
+     * reçoit ensuite sa ligne source, et la dernière reçoit le tampon. Un
+     * ensemble de bits marque les lignes déjà placées. Chaque ligne est donc
+     * copiée une fois, plus une copie par cycle.
+     *
+     * @param img     image modifiée
+     * @param srcRows ligne source de chaque ligne (doit être une bijection)
+     * @throws IllegalArgumentException si srcRows n'est pas une permutation des lignes
+     */
+    public static void permuteRowsInPlace(BufferedImage img, int[] srcRows) {
+        int height = img.getHeight();
+        if (srcRows.length != height) {
+            throw new IllegalArgumentException("Taille d'image <> taille permutation");
+        }
+        if (!isPermutation(srcRows)) {
+            throw new IllegalArgumentException("La table ne permute pas les " + height
+                    + " lignes (deux lignes auraient la même source) : permutation sur place impossible");
+        }
+        WritableRaster raster = img.getRaster();
+        RowCopy copy = directCopy(raster, raster);
+        if (copy == null) {
+            copy = new ElementsCopy(raster, raster);
+        }
+        RowStash stash = new RowStash(raster);
+
+        BitSet placed = new BitSet(height);
+        for (int start = placed.nextClearBit(0); start < height; start = placed.nextClearBit(start + 1)) {
+            if (srcRows[start] == start) {
+                placed.set(start);
+                continue;
+            }
+            stash.save(start);
+            int y = start;
+            while (srcRows[y] != start) {
+                copy.copy(srcRows[y], y);
+                placed.set(y);
+                y = srcRows[y];
+            }
+            stash.restore(y);
+            placed.set(y);
+        }
+    }
+
+    /**
+     * Vérifie que table est une bijection de 0..n-1 (n = table.length) :
+     * c'est le cas des tables de generatePermutation quand pgcd(2s+1, n) = 1.
+     *
+     * @param table table à vérifier
+     * @return true si chaque valeur 0..n-1 apparaît exactement une fois
+     */
+    public static boolean isPermutation(int[] table) {
+        BitSet seen = new BitSet(table.length);
+        for (int v : table) {
+            if (v < 0 || v >= table.length || seen.get(v)) {
+                return false;
+            }
+            seen.set(v);
+        }
+        return true;
+    }
+
+    // Tampon d'une ligne du raster (données dans le format du raster).
+    private static final class RowStash {
+        private final WritableRaster raster;
+        private Object row;
+
+        RowStash(WritableRaster raster) {
+            this.raster = raster;
+        }
+
+        void save(int y) {
+            row = raster.getDataElements(raster.getMinX(), raster.getMinY() + y, raster.getWidth(), 1, row);
+        }
+
+        void restore(int y) {
+            raster.setDataElements(raster.getMinX(), raster.getMinY() + y, raster.getWidth(), 1, row);
+        }
+    }
+
+    /**
+     * Permutation inverse : inv[perm[i]] = i. Si perm n'est pas une
+     * bijection, la dernière ligne envoyée à une position l'emporte et les
+     * positions que personne n'atteint valent -1.
+     *
+     * @param perm permutation
+     * @return permutation inverse
+     */
+    public static int[] invert(int[] perm) {
+        int[] inv = new int[perm.length];
+        Arrays.fill(inv, -1);
+        for (int i = 0; i < perm.length; i++) {
+            inv[perm[i]] = i;
+        }
+        return inv;
+    }
+
+    /**
+     * Convertit une image en matrice de niveaux de gris (format de rgb2gl).
+     *
+     * @param img image d'entrée
+     * @return tableau 2D des niveaux de gris (0-255)
+     */
+    public static int[][] toGray(BufferedImage img) {
+        return toLuma(img).toMatrix();
+    }
+
+    /**
+     * Convertit une image en niveaux de gris (0-255), avec la même formule que
+     * rgb2gl : (r * 299 + g * 587 + b * 114) / 1000, sur les valeurs que
+     * renverrait getRGB. Les formats courants (INT_RGB, INT_ARGB, 3BYTE_BGR,
+     * 4BYTE_ABGR, images 8 bits indexées ou grises) sont lus directement dans le
+     * DataBuffer ; les autres passent par getRGB ligne par ligne.
+     *
+     * @param img image d'entrée
+     * @return image en niveaux de gris (un octet par pixel)
+     */
+    public static LumaImage toLuma(BufferedImage img) {
+        final int height = img.getHeight();
+        final int width = img.getWidth();
+        byte[] out = new byte[width * height];
+        lumaRows(img).convert(0, height, out, 0);
+        return new LumaImage(width, height, out);
+    }
+
+    // Poids de rgb2gl par valeur de composante : r * 299, g * 587, b * 114
+    private static final int[] RED_WEIGHT = weights(299);
+    private static final int[] GREEN_WEIGHT = weights(587);
+    private static final int[] BLUE_WEIGHT = weights(114);
+
+    private static int[] weights(int factor) {
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = v * factor;
+        }
+        return table;
+    }
+
+    /**
+     * Conversion en niveaux de gris des lignes d'une image : les lignes
+     * y0..y1-1 sont écrites à la suite dans out à partir de off (width octets
+     * par ligne). Utilisée par toLuma et par LumaDecoder, qui convertit les
+     * lignes au fur et à mesure de leur décodage.
+     */
+    interface LumaRows {
+        void convert(int y0, int y1, byte[] out, int off);
+    }
+
+    // Conversion adaptée au format de l'image (voir toLuma).
+    static LumaRows lumaRows(BufferedImage img) {
+        final int width = img.getWidth();
+        WritableRaster raster = img.getRaster();
+        boolean untranslated = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+        DataBuffer db = raster.getDataBuffer();
+        SampleModel sm = raster.getSampleModel();
+        int type = img.getType();
+
+        if (untranslated && db instanceof DataBufferInt && db.getNumBanks() == 1
+                && sm instanceof SinglePixelPackedSampleModel
+                && (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)) {
+            int[] data = ((DataBufferInt) db).getData();
+            int stride = ((SinglePixelPackedSampleModel) sm).getScanlineStride();
+            int base = db.getOffset();
+            return (y0, y1, out, off) -> {
+                for (int y = y0, dst = off; y < y1; y++, dst += width) {
+                    int src = base + y * stride;
+                    for (int x = 0; x < width; x++) {
+                        out[dst + x] = (byte) gray(data[src + x]);
+                    }
+                }
+            };
+        }
+
+        if (untranslated && db instanceof DataBufferByte && db.getNumBanks() == 1
+                && sm instanceof ComponentSampleModel) {
+            ComponentSampleModel csm = (ComponentSampleModel) sm;
+            byte[] data = ((DataBufferByte) db).getData();
+            int stride = csm.getScanlineStride();
+            int pixelStride = csm.getPixelStride();
+            int base = db.getOffset();
+            int[] bands = csm.getBandOffsets();
+
+            if (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR) {
+                // Bandes dans l'ordre R, G, B (, A) ; les couleurs ne sont pas prémultipliées
+                int offR = bands[0];
+                int offG = bands[1];
+                int offB = bands[2];
+                return (y0, y1, out, off) -> {
+                    for (int y = y0, dst = off; y < y1; y++, dst += width) {
+                        int src = base + y * stride;
+                        for (int x = 0; x < width; x++, src += pixelStride) {
+                            out[dst + x] = (byte) ((RED_WEIGHT[data[src + offR] & 0xFF]
+                                    + GREEN_WEIGHT[data[src + offG] & 0xFF]
+                                    + BLUE_WEIGHT[data[src + offB] & 0xFF]) / 1000);
+                        }
+                    }
+                };
+            }
+
+            if (csm.getNumBands() == 1 && csm.getSampleSize(0) == 8) {
+                // Une valeur sur 8 bits par pixel : table des 256 niveaux de gris possibles
+                int[] lut = grayLut(img.getColorModel());
+                int off0 = base + bands[0];
+                return (y0, y1, out, off) -> {
+                    for (int y = y0, dst = off; y < y1; y++, dst += width) {
+                        int src = off0 + y * stride;
+                        for (int x = 0; x < width; x++, src += pixelStride) {
+                            out[dst + x] = (byte) lut[data[src] & 0xFF];
+                        }
+                    }
+                };
+            }
+        }
+
+        // Cas général : getRGB en bloc, une ligne à la fois
+        return (y0, y1, out, off) -> {
+            int[] argbLine = new int[width];
+            for (int y = y0, dst = off; y < y1; y++, dst += width) {
+                img.getRGB(0, y, width, 1, argbLine, 0, width);
+                for (int x = 0; x < width; x++) {
+                    out[dst + x] = (byte) gray(argbLine[x]);
+                }
+            }
+        };
+    }
+
+    // Niveau de gris d'un pixel ARGB (même formule que rgb2gl).
+    static int gray(int argb) {
+        return (RED_WEIGHT[(argb >> 16) & 0xFF] + GREEN_WEIGHT[(argb >> 8) & 0xFF] + BLUE_WEIGHT[argb & 0xFF]) / 1000;
+    }
+
+    // Niveau de gris de chaque valeur 8 bits, tel que getRGB le renverrait.
+    static int[] grayLut(ColorModel cm) {
+        int[] lut = new int[256];
+        byte[] pixel = new byte[1];
+        for (int v = 0; v < 256; v++) {
+            pixel[0] = (byte) v;
+            lut[v] = gray(cm.getRGB(pixel));
+        }
+        return lut;
+    }
+
+    // Copie d'une ligne source vers une ligne destination.
+    private interface RowCopy {
+        void copy(int srcY, int dstY);
+    }
+
+    // Copie directe dans les tableaux du DataBuffer, si les deux rasters ont la même organisation.
+    private static RowCopy directCopy(WritableRaster in, WritableRaster out) {
+        if (in.getSampleModelTranslateX() != 0 || in.getSampleModelTranslateY() != 0
+                || out.getSampleModelTranslateX() != 0 || out.getSampleModelTranslateY() != 0) {
+            return null;
+        }
+        DataBuffer dbIn = in.getDataBuffer();
+        DataBuffer dbOut = out.getDataBuffer();
+        if (dbIn.getNumBanks() != 1 || dbOut.getNumBanks() != 1) {
+            return null;
+        }
+        SampleModel sm = in.getSampleModel();
+        if (!sm.equals(out.getSampleModel())) {
+            return null;
+        }
+        int stride;
+        int rowLength;
+        if (sm instanceof ComponentSampleModel) {
+            ComponentSampleModel csm = (ComponentSampleModel) sm;
+            int maxBand = 0;
+            for (int band : csm.getBandOffsets()) {
+                maxBand = Math.max(maxBand, band);
+            }
+            stride = csm.getScanlineStride();
+            rowLength = (csm.getWidth() - 1) * csm.getPixelStride() + maxBand + 1;
+        } else if (sm instanceof SinglePixelPackedSampleModel) {
+            stride = ((SinglePixelPackedSampleModel) sm).getScanlineStride();
+            rowLength = sm.getWidth();
+        } else {
+            return null;
+        }
+        int offIn = dbIn.getOffset();
+        int offOut = dbOut.getOffset();
+        if (dbIn instanceof DataBufferInt && dbOut instanceof DataBufferInt) {
+            int[] a = ((DataBufferInt) dbIn).getData();
+            int[] b = ((DataBufferInt) dbOut).getData();
+            return (srcY, dstY) -> System.arraycopy(a, offIn + srcY * stride, b, offOut + dstY * stride, rowLength);
+        }
+        if (dbIn instanceof DataBufferByte && dbOut instanceof DataBufferByte) {
+            byte[] a = ((DataBufferByte) dbIn).getData();
+            byte[] b = ((DataBufferByte) dbOut).getData();
+            return (srcY, dstY) -> System.arraycopy(a, offIn + srcY * stride, b, offOut + dstY * stride, rowLength);
+        }
+        return null;
+    }
+
+    // Copie générique via getDataElements / setDataElements (tampon propre à chaque thread).
+    private static final class ElementsCopy implements RowCopy {
+        private final WritableRaster in;
+        private final WritableRaster out;
+        private final ThreadLocal<Object> buffer = new ThreadLocal<>();
+
+        ElementsCopy(WritableRaster in, WritableRaster out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public void copy(int srcY, int dstY) {
+            int width = in.getWidth();
+            Object row = in.getDataElements(in.getMinX(), in.getMinY() + srcY, width, 1, buffer.get());
+            buffer.set(row);
+            out.setDataElements(out.getMinX(), out.getMinY() + dstY, width, 1, row);
+        }
+    }
+}
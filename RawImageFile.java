@@ -0,0 +1,360 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+/**
+ * Conteneur brut d'image, lu et écrit par projection mémoire (FileChannel.map).
+ *
+ * Format (entiers big-endian) :
+ *   0  "BRIM"             signature
+ *   4  short version      (1)
+ *   6  short type         octets par pixel : 1 = gris, 3 = RGB, 4 = RGBA
+ *   8  int largeur
+ *   12 int hauteur
+ *   16 int clé            clé de brouillage, -1 si inconnue
+ *   20 int drapeaux       bit 0 : lignes brouillées
+ *   24 8 octets réservés
+ *   32 pixels             ligne par ligne, sans compression
+ *
+ * Sans encodage ni décodage, brouiller revient à recopier des lignes d'une
+ * projection à l'autre, et keyBreak lit la luminance directement dans le
+ * fichier projeté. Au-delà de 2 Go, le fichier est projeté en plusieurs
+ * segments contenant chacun un nombre entier de lignes.
+ */
+public class RawImageFile implements Closeable {
+
+    public static final int GRAY = 1;
+    public static final int RGB = 3;
+    public static final int RGBA = 4;
+    public static final int FLAG_SCRAMBLED = 1;
+
+    private static final byte[] MAGIC = "BRIM".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int pixelType;
+    private final int key;
+    private final int flags;
+    private final int rowBytes;
+    private final int rowsPerSegment;
+    private final MappedByteBuffer[] segments;
+
+    private RawImageFile(FileChannel channel, int width, int height, int pixelType, int key, int flags,
+                         boolean writable) throws IOException {
+        if (pixelType != GRAY && pixelType != RGB && pixelType != RGBA) {
+            throw new IOException("Type de pixel inconnu: " + pixelType);
+        }
+        if (width <= 0 || height <= 0 || (long) width * pixelType > Integer.MAX_VALUE) {
+            throw new IOException("Dimensions invalides: " + width + "x" + height);
+        }
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.pixelType = pixelType;
+        this.key = key;
+        this.flags = flags;
+        this.rowBytes = width * pixelType;
+        this.rowsPerSegment = Math.max(1, Math.min(height, Integer.MAX_VALUE / rowBytes));
+
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        int count = (height + rowsPerSegment - 1) / rowsPerSegment;
+        this.segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            int rows = Math.min(rowsPerSegment, height - i * rowsPerSegment);
+            long position = HEADER_SIZE + (long) i * rowsPerSegment * rowBytes;
+            segments[i] = channel.map(mode, position, (long) rows * rowBytes);
+        }
+    }
+
+    /**
+     * Ouvre un conteneur existant.
+     *
+     * @param path     fichier .raw
+     * @param writable true pour pouvoir modifier les pixels
+     * @return conteneur projeté en mémoire
+     */
+    public static RawImageFile open(Path path, boolean writable) throws IOException {
+        FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // lecture de l'en-tête complet
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || !hasMagic(header)) {
+                throw new IOException("Conteneur brut invalide: " + path);
+            }
+            int version = header.getShort(4);
+            if (version != VERSION) {
+                throw new IOException("Version de conteneur non gérée: " + version);
+            }
+            int pixelType = header.getShort(6);
+            int width = header.getInt(8);
+            int height = header.getInt(12);
+            long expected = HEADER_SIZE + (long) width * height * pixelType;
+            if (channel.size() < expected) {
+                throw new IOException("Conteneur tronqué: " + path);
+            }
+            return new RawImageFile(channel, width, height, pixelType, header.getInt(16), header.getInt(20), writable);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Crée un conteneur vide (pixels à zéro) et le projette en écriture.
+     */
+    public static RawImageFile create(Path path, int width, int height, int pixelType, int key, int flags)
+            throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.put(MAGIC);
+            header.putShort((short) VERSION);
+            header.putShort((short) pixelType);
+            header.putInt(width);
+            header.putInt(height);
+            header.putInt(key);
+            header.putInt(flags);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            return new RawImageFile(channel, width, height, pixelType, key, flags, true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Vrai si le fichier commence par la signature du conteneur brut.
+    public static boolean isRawFile(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasMagic(ByteBuffer header) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header.get(i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int pixelType() {
+        return pixelType;
+    }
+
+    public int key() {
+        return key;
+    }
+
+    public boolean isScrambled() {
+        return (flags & FLAG_SCRAMBLED) != 0;
+    }
+
+    public int rowBytes() {
+        return rowBytes;
+    }
+
+    // Segment contenant la ligne y.
+    private MappedByteBuffer segment(int y) {
+        return segments[y / rowsPerSegment];
+    }
+
+    // Position de la ligne y dans son segment.
+    private int index(int y) {
+        return (y % rowsPerSegment) * rowBytes;
+    }
+
+    // Copie la ligne y dans dst (rowBytes() octets à partir de off).
+    public void readRow(int y, byte[] dst, int off) {
+        segment(y).get(index(y), dst, off, rowBytes);
+    }
+
+    // Remplace la ligne y par rowBytes() octets de src.
+    public void writeRow(int y, byte[] src, int off) {
+        segment(y).put(index(y), src, off, rowBytes);
+    }
+
+    // Copie la ligne srcY de ce conteneur dans la ligne dstY de dst, de projection à projection.
+    public void copyRow(int srcY, RawImageFile dst, int dstY) {
+        dst.segment(dstY).put(dst.index(dstY), segment(srcY), index(srcY), rowBytes);
+    }
+
+    /**
+     * Niveaux de gris lus directement dans la projection (même formule que
+     * rgb2gl sur l'image équivalente). Un LumaImage tient dans un byte[] :
+     * au-delà de Integer.MAX_VALUE pixels, le conteneur est refusé.
+     */
+    public LumaImage toLuma() {
+        long pixels = (long) width * height;
+        if (pixels > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Image trop grande pour les niveaux de gris en mémoire: "
+                    + width + "x" + height + " (" + pixels + " pixels, au plus " + Integer.MAX_VALUE + ")");
+        }
+        byte[] data = new byte[(int) pixels];
+        if (pixelType == GRAY) {
+            for (int y = 0; y < height; y++) {
+                readRow(y, data, y * width);
+            }
+            return new LumaImage(width, height, data);
+        }
+        byte[] row = new byte[rowBytes];
+        for (int y = 0; y < height; y++) {
+            readRow(y, row, 0);
+            int dst = y * width;
+            for (int x = 0, i = 0; x < width; x++, i += pixelType) {
+                int r = row[i] & 0xFF;
+                int g = row[i + 1] & 0xFF;
+                int b = row[i + 2] & 0xFF;
+                data[dst + x] = (byte) ((r * 299 + g * 587 + b * 114) / 1000);
+            }
+        }
+        return new LumaImage(width, height, data);
+    }
+
+    /**
+     * Image équivalente (TYPE_BYTE_GRAY, TYPE_3BYTE_BGR ou TYPE_4BYTE_ABGR).
+     */
+    public BufferedImage toImage() {
+        int type = pixelType == GRAY ? BufferedImage.TYPE_BYTE_GRAY
+                : pixelType == RGB ? BufferedImage.TYPE_3BYTE_BGR : BufferedImage.TYPE_4BYTE_ABGR;
+        BufferedImage img = new BufferedImage(width, height, type);
+        // Les éléments d'un pixel sont donnés dans l'ordre des bandes (R, G, B (, A)) :
+        // c'est exactement l'ordre du conteneur, quel que soit le rangement en mémoire.
+        byte[] row = new byte[rowBytes];
+        for (int y = 0; y < height; y++) {
+            readRow(y, row, 0);
+            img.getRaster().setDataElements(0, y, width, 1, row);
+        }
+        return img;
+    }
+
+    /**
+     * Écrit une image dans un conteneur brut (RGB, ou RGBA si l'image a un canal alpha).
+     *
+     * @param img   image à écrire
+     * @param path  fichier de sortie
+     * @param key   clé de brouillage (-1 si inconnue)
+     * @param flags drapeaux du conteneur
+     */
+    public static void write(BufferedImage img, Path path, int key, int flags) throws IOException {
+        int pixelType = img.getColorModel().hasAlpha() ? RGBA : RGB;
+        int width = img.getWidth();
+        try (RawImageFile raw = create(path, width, img.getHeight(), pixelType, key, flags)) {
+            int[] argb = new int[width];
+            byte[] row = new byte[raw.rowBytes()];
+            for (int y = 0; y < img.getHeight(); y++) {
+                img.getRGB(0, y, width, 1, argb, 0, width);
+                StripScrambler.packRow(argb, pixelType, row);
+                raw.writeRow(y, row, 0);
+            }
+        }
+    }
+
+    /**
+     * Brouille ou débrouille un conteneur vers un autre, ligne à ligne de
+     * projection à projection.
+     *
+     * @param in         conteneur source
+     * @param out        fichier de sortie
+     * @param key        clé de brouillage
+     * @param unscramble true pour débrouiller
+     */
+    public static void permute(RawImageFile in, Path out, int key, boolean unscramble) throws IOException {
+        int[] perm = Brouillimg.generatePermutation(in.height(), key);
+        int flags = unscramble ? 0 : FLAG_SCRAMBLED;
+        try (RawImageFile dst = create(out, in.width(), in.height(), in.pixelType(), key, flags)) {
+            for (int y = 0; y < in.height(); y++) {
+                // Brouillage : la ligne y part en perm[y] ; débrouillage : la ligne y vient de perm[y]
+                if (unscramble) {
+                    in.copyRow(perm[y], dst, y);
+                } else {
+                    in.copyRow(y, dst, perm[y]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null && !segment.isReadOnly()) {
+                segment.force();
+            }
+        }
+        channel.close();
+    }
+
+    /**
+     * Conversions :
+     *   java RawImageFile toraw <image> <sortie.raw> [clé]
+     *   java RawImageFile topng <entrée.raw> <sortie.png>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: java RawImageFile toraw <image> <sortie.raw> [clé]");
+            System.err.println("       java RawImageFile topng <entrée.raw> <sortie.png>");
+            System.exit(1);
+        }
+        if (args[0].equals("toraw")) {
+            BufferedImage img = ImageIO.read(new File(args[1]));
+            if (img == null) {
+                throw new IOException("Format d’image non reconnu: " + args[1]);
+            }
+            int key = args.length >= 4 ? Integer.parseInt(args[3]) & 0x7FFF : -1;
+            write(img, Path.of(args[2]), key, key >= 0 ? FLAG_SCRAMBLED : 0);
+        } else if (args[0].equals("topng")) {
+            try (RawImageFile raw = open(Path.of(args[1]), false)) {
+                BufferedImage img = raw.toImage();
+                if (!ImageIO.write(img, "png", new File(args[2]))) {
+                    System.err.println("Aucun writer PNG pour cette image (type " + img.getType() + "): " + args[2]);
+                    System.exit(1);
+                }
+            }
+        } else {
+            System.err.println("Conversion inconnue: " + args[0]);
+            System.exit(1);
+        }
+        System.out.println("Écrit: " + args[2]);
+    }
+}
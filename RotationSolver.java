@@ -0,0 +1,157 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+/**
+ * Score de toutes les valeurs de R d'un même S en une seule passe.
+ *
+ * Pour S fixé, le pas g = (2s+1) % H est le même pour toutes les clés :
+ * changer R ne fait que choisir où commence la suite r, r+g, r+2g, ... (mod H).
+ * Avec w[p] = score(ligne p, ligne p+g), calculé une fois pour chaque p, la
+ * suite parcourt d = pgcd(g, H) fois le cycle des positions p ≡ r (mod d),
+ * moins la paire qui reviendrait au départ (celle qui part de r - g) :
+ *
+ *     score(r) = d * T[r % d] - w[(r - g) mod H],   T[c] = somme des w[p], p ≡ c (mod d)
+ *
+ * Les H paires de lignes sont donc évaluées une seule fois pour les 256
+ * valeurs de R, au lieu de 256 x (H-1).
+ *
+ * La soustraction ne donne pas exactement la même somme flottante que
+ * l'addition dans l'ordre : les quelques R dont le score approché est à
+ * l'arrondi près du meilleur sont recalculés en additionnant les w dans
+ * l'ordre de scoreEuclidean / scorePearson. La clé et le score renvoyés sont
+ * ainsi identiques au bit près à ceux du parcours exhaustif.
+ */
+public class RotationSolver {
+
+    // Tolérance relative sur le score approché, très au-dessus des erreurs d'arrondi
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * Meilleure valeur de R pour S fixé.
+     *
+     * @param luma   image brouillée en niveaux de gris
+     * @param stats  statistiques des lignes pour Pearson (maximisé), null pour l'euclidien (minimisé)
+     * @param s      valeur de S (0..127)
+     * @param rCount nombre de valeurs de R testées (256 pour toutes)
+     * @return la clé (r << 7) | s retenue et son score exact
+     */
+    public static ParallelKeySearch.Result bestOffset(LumaImage luma, RowStats stats, int s, int rCount) {
+        int height = luma.height();
+        boolean pearson = stats != null;
+        if (height < 2) {
+            return new ParallelKeySearch.Result(s, 0.0);
+        }
+        int step = (2 * s + 1) % height;
+        int cycles = gcd(step, height);
+
+        // Une évaluation par paire (p, p + pas), et somme de chaque cycle
+        double[] w = new double[height];
+        double[] cycleSum = new double[cycles];
+        double magnitude = 0;
+        for (int p = 0, q = step; p < height; p++) {
+            w[p] = pearson ? stats.correlation(luma, p, q) : luma.euclideanDistance(p, q);
+            cycleSum[p % cycles] += w[p];
+            magnitude += Math.abs(w[p]);
+            if (++q == height) {
+                q = 0;
+            }
+        }
+
+        // Score approché de chaque R (sans la division par H-1 de Pearson : même classement)
+        double[] approx = new double[rCount];
+        double best = 0;
+        for (int r = 0; r < rCount; r++) {
+            int start = r % height;
+            int wrap = start - step < 0 ? start - step + height : start - step;
+            approx[r] = cycles * cycleSum[start % cycles] - w[wrap];
+            if (r == 0 || (pearson ? approx[r] > best : approx[r] < best)) {
+                best = approx[r];
+            }
+        }
+
+        // Recalcul exact des R proches du meilleur ; à égalité, le plus petit R l'emporte
+        double tolerance = TOLERANCE * cycles * magnitude;
+        int bestR = -1;
+        double bestScore = 0;
+        for (int r = 0; r < rCount; r++) {
+            if (Math.abs(approx[r] - best) > tolerance) {
+                continue;
+            }
+            double score = orderedSum(w, r % height, step, height);
+            if (pearson) {
+                score /= height - 1;
+            }
+            if (bestR < 0 || (pearson ? score > bestScore : score < bestScore)) {
+                bestR = r;
+                bestScore = score;
+            }
+        }
+        return new ParallelKeySearch.Result((bestR << 7) | s, bestScore);
+    }
+
+    /**
+     * Meilleure clé parmi les 32768, en une passe par valeur de S ; les
+     * valeurs de S sont réparties sur threads cœurs.
+     *
+     * @param luma    image brouillée en niveaux de gris
+     * @param pearson true pour Pearson (maximisé), false pour l'euclidien (minimisé)
+     * @param threads nombre de threads
+     * @return la même clé et le même score que le parcours exhaustif
+     */
+    public static ParallelKeySearch.Result search(LumaImage luma, boolean pearson, int threads) {
+        return search(luma, pearson, threads, SearchProgress.NONE);
+    }
+
+    // Même recherche, avec suivi de l'avancement (256 clés par valeur de S)
+    public static ParallelKeySearch.Result search(LumaImage luma, boolean pearson, int threads,
+                                                  SearchProgress progress) {
+        RowStats stats = pearson ? RowStats.of(luma) : null;
+        int[] sValues = new int[128];
+        for (int s = 0; s < 128; s++) {
+            sValues[s] = s;
+        }
+        // Clé retenue pour chaque S (chaque thread écrit des cases distinctes)
+        int[] bestKeys = new int[128];
+        double[] scores = ParallelKeySearch.scoreAll(sValues, threads, () -> s -> {
+            ParallelKeySearch.Result result = bestOffset(luma, stats, s, 256);
+            bestKeys[s] = result.key;
+            progress.scored(256);
+            progress.offer(result.key, result.score);
+            return result.score;
+        });
+
+        int best = 0;
+        for (int s = 1; s < 128; s++) {
+            boolean better = pearson ? scores[s] > scores[best] : scores[s] < scores[best];
+            if (better || (scores[s] == scores[best] && bestKeys[s] < bestKeys[best])) {
+                best = s;
+            }
+        }
+        return new ParallelKeySearch.Result(bestKeys[best], scores[best]);
+    }
+
+    // Somme des H-1 paires à partir de start, dans l'ordre de scoreEuclidean / scorePearson.
+    private static double orderedSum(double[] w, int start, int step, int height) {
+        double total = 0.0;
+        int p = start;
+        for (int i = 0; i < height - 1; i++) {
+            total += w[p];
+            p += step;
+            if (p >= height) {
+                p -= height;
+            }
+        }
+        return total;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
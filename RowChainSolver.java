@@ -0,0 +1,597 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import javax.imageio.ImageIO;
+
+/**
+ * Remise en ordre des lignes sans clé : pour des lignes mélangées par une
+ * permutation quelconque (pas seulement celles de scrambledId), on cherche
+ * la chaîne qui passe une fois par chaque ligne en minimisant la somme des
+ * distances euclidiennes entre lignes voisines (un chemin de voyageur de
+ * commerce approché).
+ *
+ * 1. Chaque ligne est réduite à une signature de quelques dizaines de pixels
+ *    (LumaImage.averageColumns), indexée dans un VantagePointTree.
+ * 2. Les k plus proches signatures de chaque ligne donnent les arêtes
+ *    candidates, dont le poids est la distance exacte en pleine résolution.
+ *    On évalue ainsi H x k paires au lieu de H².
+ * 3. Heuristique gloutonne des arêtes : les candidates sont prises de la plus
+ *    courte à la plus longue, tant qu'aucune ligne n'a plus de deux voisines
+ *    et qu'aucun cycle n'est fermé (union-find). On obtient des morceaux de
+ *    chaîne.
+ * 4. Les morceaux sont raccordés par leurs extrémités, avec la même
+ *    heuristique sur un arbre ne contenant que les extrémités, en doublant k
+ *    jusqu'à n'avoir plus qu'une chaîne.
+ * 5. La chaîne est améliorée par 2-opt : un segment est retourné quand cela
+ *    rapproche une ligne de l'une de ses k voisines candidates et fait baisser
+ *    le score. Les retournements d'un début ou d'une fin de chaîne sont
+ *    compris, ce qui corrige les raccords de l'étape 4.
+ * 6. Or-opt : un segment de 1 à 3 lignes laissé de côté par la chaîne
+ *    gloutonne est déplacé à côté de l'une de ses candidates, si le score
+ *    baisse. Les étapes 5 et 6 alternent jusqu'à ne plus rien gagner.
+ *
+ * Le sens de la chaîne ne se déduit pas des lignes (une image retournée a le
+ * même score) : elle commence par celle de ses deux extrémités qui a le plus
+ * petit numéro de ligne dans l'image brouillée.
+ */
+public class RowChainSolver {
+
+    // Voisins candidats par ligne
+    public static final int DEFAULT_NEIGHBOURS = 8;
+    // Largeur visée des signatures
+    public static final int DEFAULT_SIGNATURE = 64;
+
+    /**
+     * Ordre des lignes retrouvé, au format de generatePermutation : la ligne y
+     * de l'image remise en ordre est la ligne order[y] de l'image brouillée
+     * (utilisable directement avec unScrambleLines / permuteRowsInPlace).
+     *
+     * @param luma       image brouillée en niveaux de gris
+     * @param neighbours nombre de voisins candidats par ligne
+     * @param signature  largeur des signatures (pixels)
+     * @param threads    nombre de threads pour les recherches de voisins
+     * @return ordre des lignes
+     */
+    public static int[] solve(LumaImage luma, int neighbours, int signature, int threads) {
+        int height = luma.height();
+        if (height <= 2) {
+            return identity(height);
+        }
+        int factor = Math.max(1, (luma.width() + signature - 1) / signature);
+        LumaImage signatures = luma.averageColumns(factor);
+        VantagePointTree tree = new VantagePointTree(signatures);
+
+        // Arêtes candidates (i, j) avec i < j, en double quand j est aussi voisin de i
+        int k = Math.min(neighbours, height - 1);
+        int[][] candidates = new int[height][];
+        forEach(height, threads, i -> candidates[i] = tree.nearest(i, k, j -> j != i));
+        long[] edges = new long[height * k];
+        int count = 0;
+        for (int i = 0; i < height; i++) {
+            for (int j : candidates[i]) {
+                edges[count++] = i < j ? pair(i, j) : pair(j, i);
+            }
+        }
+        edges = distinct(edges, count);
+
+        Chain chain = new Chain(height);
+        chain.link(luma, edges, threads);
+
+        // Raccord des morceaux par leurs extrémités
+        for (int reach = k; chain.pieces() > 1; reach *= 2) {
+            int[] ends = chain.ends();
+            VantagePointTree endTree = new VantagePointTree(signatures, ends);
+            int n = Math.min(reach, ends.length - 1);
+            int[][] near = new int[ends.length][];
+            forEach(ends.length, threads, e -> {
+                int end = ends[e];
+                near[e] = endTree.nearest(end, n, j -> !chain.sameChain(end, j));
+            });
+            long[] joins = new long[ends.length * n];
+            int joinCount = 0;
+            for (int e = 0; e < ends.length; e++) {
+                for (int j : near[e]) {
+                    int a = ends[e];
+                    joins[joinCount++] = a < j ? pair(a, j) : pair(j, a);
+                }
+            }
+            chain.link(luma, distinct(joins, joinCount), threads);
+        }
+        int[] order = chain.order();
+        new Refiner(luma, order, candidates, threads).run();
+        return order;
+    }
+
+    /**
+     * Somme des distances euclidiennes entre lignes voisines de l'image remise
+     * dans l'ordre order (même score que keyBreak.scoreEuclidean).
+     *
+     * @param luma  image brouillée en niveaux de gris
+     * @param order ordre des lignes
+     * @return score (plus petit = meilleur)
+     */
+    public static double score(LumaImage luma, int[] order) {
+        double total = 0;
+        for (int y = 0; y + 1 < order.length; y++) {
+            total += luma.euclideanDistance(order[y], order[y + 1]);
+        }
+        return total;
+    }
+
+    // Nombre maximal de passes de 2-opt + Or-opt
+    private static final int MAX_PASSES = 32;
+    // Longueur maximale des segments déplacés par Or-opt
+    private static final int MAX_SEGMENT = 3;
+    // Tolérance relative des gains (évite de boucler sur des arrondis)
+    private static final double TOLERANCE = 1e-12;
+
+    /**
+     * Améliorations locales de la chaîne (2-opt et Or-opt), limitées aux
+     * voisines candidates. Les distances sont exactes (pleine résolution) ;
+     * celles des candidates et celles des lignes voisines de la chaîne sont
+     * gardées en cache. Un mouvement qui rapproche x de sa candidate c n'est
+     * essayé que si d(x, c) est plus courte qu'un lien qu'il supprime (critère
+     * de gain de Lin-Kernighan) : les lignes déjà bien placées coûtent peu.
+     */
+    private static final class Refiner {
+        private final LumaImage luma;
+        private final int[] order;
+        private final int[] pos;
+        private final int[][] candidates;
+        private final double[][] candidateDistance;
+        // edge[y] = d(order[y], order[y + 1]), NaN si à recalculer
+        private final double[] edge;
+        private final int n;
+
+        Refiner(LumaImage luma, int[] order, int[][] candidates, int threads) {
+            this.luma = luma;
+            this.order = order;
+            this.candidates = candidates;
+            this.n = order.length;
+            this.pos = new int[n];
+            for (int y = 0; y < n; y++) {
+                pos[order[y]] = y;
+            }
+            this.candidateDistance = new double[n][];
+            forEach(n, threads, x -> {
+                double[] d = new double[candidates[x].length];
+                for (int m = 0; m < d.length; m++) {
+                    d[m] = luma.euclideanDistance(x, candidates[x][m]);
+                }
+                candidateDistance[x] = d;
+            });
+            this.edge = new double[n - 1];
+            forEach(n - 1, threads, y -> edge[y] = luma.euclideanDistance(order[y], order[y + 1]));
+        }
+
+        void run() {
+            for (int pass = 0; pass < MAX_PASSES; pass++) {
+                boolean improved = twoOpt();
+                if (!orOpt() && !improved) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * 2-opt : pour chaque ligne a et chaque candidate c plus proche que la
+         * suivante de a, retourne le segment qui rend a et c voisines si la
+         * somme des distances baisse. Les débuts et fins de chaîne sont aussi
+         * retournés pour accrocher une extrémité à une candidate.
+         */
+        private boolean twoOpt() {
+            boolean improved = false;
+            for (int i = 0; i + 1 < n; i++) {
+                int a = order[i];
+                for (int m = 0; m < candidates[a].length; m++) {
+                    if (candidateDistance[a][m] >= edge(i)) {
+                        continue;
+                    }
+                    int j = pos[candidates[a][m]];
+                    // Segment à retourner pour que a et c deviennent voisines
+                    int from;
+                    int to;
+                    if (j > i + 1) {
+                        from = i + 1;        // a [b ... c] e
+                        to = j;
+                    } else if (j < i - 1) {
+                        from = j + 1;        // c [f ... a] b
+                        to = i;
+                    } else {
+                        continue;
+                    }
+                    // Liens supprimés : (a, b) et (c, e) ou (c, f) ; liens créés : (a, c) et (b, e) ou (f, b)
+                    double before = edge(from - 1) + edge(to);
+                    double after = candidateDistance[a][m] + (j > i
+                            ? distance(order[i + 1], j + 1 < n ? order[j + 1] : -1)
+                            : distance(order[j + 1], order[i + 1]));
+                    if (after < before - TOLERANCE * before) {
+                        reverse(from, to);
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+            for (int end = 0; end < 2; end++) {
+                int x = order[end == 0 ? 0 : n - 1];
+                for (int m = 0; m < candidates[x].length; m++) {
+                    int j = pos[candidates[x][m]];
+                    // Début [0, j-1] ou fin [j+1, n-1] retourné : x contre c, le lien de c de ce côté disparaît
+                    int from = end == 0 ? 0 : j + 1;
+                    int to = end == 0 ? j - 1 : n - 1;
+                    if (to <= from) {
+                        continue;
+                    }
+                    double before = end == 0 ? edge(to) : edge(from - 1);
+                    if (candidateDistance[x][m] < before - TOLERANCE * before) {
+                        reverse(from, to);
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+            return improved;
+        }
+
+        /**
+         * Or-opt : le segment order[i..i+len-1] est retiré de la chaîne et
+         * réinséré, dans un sens ou dans l'autre, contre une candidate de l'une
+         * de ses extrémités, si la somme des distances baisse.
+         */
+        private boolean orOpt() {
+            boolean improved = false;
+            for (int len = 1; len <= MAX_SEGMENT && len < n; len++) {
+                for (int i = 0; i + len <= n; i++) {
+                    int head = order[i];
+                    int tail = order[i + len - 1];
+                    double headLink = i > 0 ? edge(i - 1) : 0;
+                    double tailLink = i + len < n ? edge(i + len - 1) : 0;
+                    double link = Math.max(headLink, tailLink);
+                    double removed = Double.NaN;
+                    int bestSlot = 0;
+                    boolean bestReversed = false;
+                    double bestGain = 0;
+                    for (int end = 0; end < 2; end++) {
+                        int x = end == 0 ? head : tail;
+                        for (int m = 0; m < candidates[x].length; m++) {
+                            double dc = candidateDistance[x][m];
+                            int j = pos[candidates[x][m]];
+                            if (dc >= link || j >= i && j < i + len) {
+                                continue;
+                            }
+                            if (Double.isNaN(removed)) {
+                                // Gain du retrait : les deux liens du segment, moins le lien qui referme la chaîne
+                                int before = i > 0 ? order[i - 1] : -1;
+                                int after = i + len < n ? order[i + len] : -1;
+                                removed = headLink + tailLink - distance(before, after);
+                            }
+                            // c juste avant x (créneau après c), ou juste après x (créneau avant c)
+                            for (int side = 0; side < 2; side++) {
+                                int slot = side == 0 ? j : j - 1;
+                                if (slot >= i - 1 && slot < i + len) {
+                                    continue; // créneau qui touche le segment : rien ne change
+                                }
+                                // Sens du segment : x contre c
+                                boolean reversed = (side == 0) == (x == tail) && head != tail;
+                                int other = x == head ? tail : head;
+                                int far = side == 0 ? (slot + 1 < n ? order[slot + 1] : -1)
+                                        : (slot >= 0 ? order[slot] : -1);
+                                double inserted = dc + distance(other, far) - (far < 0 ? 0 : edge(slot));
+                                double gain = removed - inserted;
+                                if (gain > bestGain && gain > TOLERANCE * removed) {
+                                    bestGain = gain;
+                                    bestSlot = slot;
+                                    bestReversed = reversed;
+                                }
+                            }
+                        }
+                    }
+                    if (bestGain > 0) {
+                        move(i, len, bestSlot, bestReversed);
+                        improved = true;
+                    }
+                }
+            }
+            return improved;
+        }
+
+        private double edge(int y) {
+            if (y < 0 || y >= n - 1) {
+                return 0;
+            }
+            if (Double.isNaN(edge[y])) {
+                edge[y] = luma.euclideanDistance(order[y], order[y + 1]);
+            }
+            return edge[y];
+        }
+
+        // Distance entre deux lignes, 0 si l'une n'existe pas (-1 : hors de la chaîne).
+        private double distance(int a, int b) {
+            return a < 0 || b < 0 ? 0 : luma.euclideanDistance(a, b);
+        }
+
+        private void reverse(int from, int to) {
+            for (int i = from, j = to; i < j; i++, j--) {
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+                pos[order[i]] = i;
+                pos[order[j]] = j;
+            }
+            // Les liens intérieurs sont les mêmes, dans l'autre ordre ; ceux des bords changent
+            for (int i = from, j = to - 1; i < j; i++, j--) {
+                double t = edge[i];
+                edge[i] = edge[j];
+                edge[j] = t;
+            }
+            invalidate(from - 1);
+            invalidate(to);
+        }
+
+        /**
+         * Déplace order[i..i+len-1] entre les positions slot et slot+1 de la
+         * chaîne actuelle (slot = -1 : au début), retourné si reversed.
+         */
+        private void move(int i, int len, int slot, boolean reversed) {
+            int[] segment = Arrays.copyOfRange(order, i, i + len);
+            if (reversed) {
+                for (int a = 0, b = len - 1; a < b; a++, b--) {
+                    int t = segment[a];
+                    segment[a] = segment[b];
+                    segment[b] = t;
+                }
+            }
+            int start;
+            int end;
+            if (slot < i) {
+                // Les lignes slot+1..i-1 reculent de len, avec leurs liens
+                System.arraycopy(order, slot + 1, order, slot + 1 + len, i - slot - 1);
+                System.arraycopy(edge, slot + 1, edge, slot + 1 + len, i - slot - 2);
+                System.arraycopy(segment, 0, order, slot + 1, len);
+                start = slot + 1;
+                end = i + len;
+                for (int y = slot; y <= slot + len; y++) {
+                    invalidate(y);
+                }
+                invalidate(i + len - 1);
+            } else {
+                // Les lignes i+len..slot avancent de len, avec leurs liens
+                System.arraycopy(order, i + len, order, i, slot - i - len + 1);
+                System.arraycopy(edge, i + len, edge, i, slot - i - len);
+                System.arraycopy(segment, 0, order, slot - len + 1, len);
+                start = i;
+                end = slot + 1;
+                invalidate(i - 1);
+                for (int y = slot - len; y <= slot; y++) {
+                    invalidate(y);
+                }
+            }
+            for (int y = start; y < end; y++) {
+                pos[order[y]] = y;
+            }
+        }
+
+        private void invalidate(int y) {
+            if (y >= 0 && y < n - 1) {
+                edge[y] = Double.NaN;
+            }
+        }
+    }
+
+    // Morceaux de chaîne : deux voisines au plus par ligne, union-find sur les morceaux.
+    private static final class Chain {
+        private final int[] first;
+        private final int[] second;
+        private final int[] parent;
+        private final int[] size;
+        private int pieces;
+
+        Chain(int height) {
+            first = new int[height];
+            second = new int[height];
+            parent = identity(height);
+            size = new int[height];
+            Arrays.fill(size, 1);
+            Arrays.fill(first, -1);
+            Arrays.fill(second, -1);
+            pieces = height;
+        }
+
+        int pieces() {
+            return pieces;
+        }
+
+        // Ajoute les arêtes possibles, de la plus courte à la plus longue (à égalité, la plus petite paire).
+        void link(LumaImage luma, long[] edges, int threads) {
+            double[] weight = new double[edges.length];
+            forEach(edges.length, threads, e -> weight[e] = luma.euclideanDistance(low(edges[e]), high(edges[e])));
+            Integer[] byWeight = new Integer[edges.length];
+            for (int e = 0; e < edges.length; e++) {
+                byWeight[e] = e;
+            }
+            Arrays.sort(byWeight, (a, b) -> weight[a] != weight[b] ? Double.compare(weight[a], weight[b])
+                    : Long.compare(edges[a], edges[b]));
+            for (int e : byWeight) {
+                int a = low(edges[e]);
+                int b = high(edges[e]);
+                if (second[a] >= 0 || second[b] >= 0 || find(a) == find(b)) {
+                    continue;
+                }
+                attach(a, b);
+                attach(b, a);
+                union(a, b);
+                pieces--;
+            }
+        }
+
+        boolean sameChain(int a, int b) {
+            return find(a) == find(b);
+        }
+
+        // Lignes qui ont encore une place libre (extrémités, et lignes isolées)
+        int[] ends() {
+            return IntStream.range(0, first.length).filter(y -> second[y] < 0).toArray();
+        }
+
+        // Parcours de la chaîne complète depuis l'extrémité de plus petit numéro.
+        int[] order() {
+            int start = -1;
+            for (int y = 0; y < first.length && start < 0; y++) {
+                if (second[y] < 0) {
+                    start = y;
+                }
+            }
+            int[] order = new int[first.length];
+            int previous = -1;
+            int current = start;
+            for (int y = 0; y < order.length; y++) {
+                order[y] = current;
+                int next = first[current] != previous ? first[current] : second[current];
+                previous = current;
+                current = next;
+            }
+            return order;
+        }
+
+        private void attach(int row, int neighbour) {
+            if (first[row] < 0) {
+                first[row] = neighbour;
+            } else {
+                second[row] = neighbour;
+            }
+        }
+
+        // Union par taille : arbres de hauteur logarithmique, sans compression de chemin
+        private void union(int a, int b) {
+            int ra = find(a);
+            int rb = find(b);
+            if (size[ra] < size[rb]) {
+                int t = ra;
+                ra = rb;
+                rb = t;
+            }
+            parent[rb] = ra;
+            size[ra] += size[rb];
+        }
+
+        // Lecture seule : appelée en parallèle par les recherches de voisins
+        private int find(int y) {
+            while (parent[y] != y) {
+                y = parent[y];
+            }
+            return y;
+        }
+    }
+
+    private static long pair(int low, int high) {
+        return ((long) low << 32) | high;
+    }
+
+    private static int low(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    private static int high(long pair) {
+        return (int) pair;
+    }
+
+    // Paires distinctes parmi les count premières, triées.
+    private static long[] distinct(long[] pairs, int count) {
+        long[] sorted = Arrays.copyOf(pairs, count);
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+
+    private static int[] identity(int n) {
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    private static void forEach(int n, int threads, IntConsumer task) {
+        if (threads <= 1) {
+            for (int i = 0; i < n; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(task)).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java RowChainSolver <image_brouillée> [sortie.png] [threads=N] [k=K] [signature=D]");
+            System.err.println("  Remet les lignes en ordre sans clé (permutation quelconque des lignes)");
+            System.err.println("  k=K : voisins candidats par ligne (8 par défaut)");
+            System.err.println("  signature=D : largeur des signatures de lignes (64 par défaut)");
+            System.exit(1);
+        }
+        String outputPath = "unscrambled_chain.png";
+        int threads = 1;
+        int neighbours = DEFAULT_NEIGHBOURS;
+        int signature = DEFAULT_SIGNATURE;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("threads=")) {
+                threads = Integer.parseInt(args[i].substring("threads=".length()));
+                if (threads <= 0) {
+                    threads = ParallelKeySearch.defaultThreads();
+                }
+            } else if (args[i].startsWith("k=")) {
+                neighbours = Integer.parseInt(args[i].substring("k=".length()));
+            } else if (args[i].startsWith("signature=")) {
+                signature = Integer.parseInt(args[i].substring("signature=".length()));
+            } else {
+                outputPath = args[i];
+            }
+        }
+        if (neighbours < 1 || signature < 1) {
+            System.err.println("k et signature doivent être positifs");
+            System.exit(1);
+        }
+
+        Profiler.Phases phases = new Profiler.Phases();
+        BufferedImage image = phases.time("decode", () -> ImageIO.read(new File(args[0])));
+        if (image == null) {
+            System.err.println("Impossible de lire l'image: " + args[0]);
+            System.exit(1);
+        }
+        LumaImage luma = phases.time("luma", () -> LumaImage.of(image));
+        int nThreads = threads;
+        int k = neighbours;
+        int d = signature;
+        int[] order = phases.time("chaine", () -> solve(luma, k, d, nThreads));
+        System.out.println("Score de la chaîne: " + String.format("%.2f", score(luma, order)));
+
+        String output = outputPath;
+        phases.time("encode", () -> {
+            RasterRows.permuteRowsInPlace(image, order);
+            PngStreamWriter.write(image, new File(output), Deflater.DEFAULT_COMPRESSION, nThreads);
+            return null;
+        });
+        System.out.println("Image remise en ordre sauvegardée: " + outputPath);
+        System.out.println("\nPhases (temps, octets alloués par le thread principal):");
+        System.out.println(phases.report());
+    }
+}
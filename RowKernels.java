@@ -0,0 +1,159 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+/**
+ * Noyaux de calcul sur les lignes de niveaux de gris (somme, produit scalaire,
+ * somme des carrés des différences), sur des lignes int[] ou sur des lignes
+ * d'octets non signés d'un LumaImage.
+ *
+ * Les valeurs étant des entiers 0..255, toutes les sommes sont entières et
+ * exactes : elles sont renvoyées en long. Converties en double, elles valent
+ * exactement les sommes accumulées en double par les anciennes boucles, tant
+ * qu'elles restent sous 2^53 (soit des lignes de plus de 10^11 pixels) : les
+ * scores sont donc identiques au bit près quelle que soit l'implémentation.
+ *
+ * L'implémentation est choisie au démarrage : VectorKernels (API Vector,
+ * jdk.incubator.vector) si le module est chargé (java --add-modules
+ * jdk.incubator.vector ...), sinon la version scalaire ci-dessous. La
+ * propriété -Dkeybreak.simd=false force la version scalaire.
+ */
+public class RowKernels {
+
+    // Opérations fournies par une implémentation des noyaux.
+    interface Impl {
+        long sum(int[] x);
+
+        long dot(int[] x, int[] y);
+
+        long sumSquaredDiff(int[] x, int[] y);
+
+        long sum(byte[] data, int off, int n);
+
+        long dot(byte[] data, int offA, int offB, int n);
+
+        long sumSquaredDiff(byte[] data, int offA, int offB, int n);
+    }
+
+    private static final Impl IMPL = select();
+
+    private static Impl select() {
+        if (!Boolean.parseBoolean(System.getProperty("keybreak.simd", "true"))) {
+            return new Scalar();
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new Scalar();
+        }
+        try {
+            return (Impl) Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new Scalar();
+        }
+    }
+
+    // Indique si les noyaux vectoriels sont utilisés.
+    public static boolean isVectorized() {
+        return !(IMPL instanceof Scalar);
+    }
+
+    // Nom de l'implémentation utilisée, pour l'affichage.
+    public static String description() {
+        return IMPL.toString();
+    }
+
+    // Somme des valeurs de la ligne.
+    public static long sum(int[] x) {
+        return IMPL.sum(x);
+    }
+
+    // Somme des produits x[i] * y[i].
+    public static long dot(int[] x, int[] y) {
+        return IMPL.dot(x, y);
+    }
+
+    // Somme des (x[i] - y[i])².
+    public static long sumSquaredDiff(int[] x, int[] y) {
+        return IMPL.sumSquaredDiff(x, y);
+    }
+
+    // Somme des n octets (non signés) à partir de off.
+    public static long sum(byte[] data, int off, int n) {
+        return IMPL.sum(data, off, n);
+    }
+
+    // Produit scalaire de deux lignes de n octets (non signés) du même tableau.
+    public static long dot(byte[] data, int offA, int offB, int n) {
+        return IMPL.dot(data, offA, offB, n);
+    }
+
+    // Somme des carrés des différences de deux lignes de n octets (non signés) du même tableau.
+    public static long sumSquaredDiff(byte[] data, int offA, int offB, int n) {
+        return IMPL.sumSquaredDiff(data, offA, offB, n);
+    }
+
+    // Version scalaire de référence.
+    static final class Scalar implements Impl {
+
+        @Override
+        public long sum(int[] x) {
+            long sum = 0;
+            for (int i = 0; i < x.length; i++) {
+                sum += x[i];
+            }
+            return sum;
+        }
+
+        @Override
+        public long dot(int[] x, int[] y) {
+            long sum = 0;
+            for (int i = 0; i < x.length; i++) {
+                sum += x[i] * y[i];
+            }
+            return sum;
+        }
+
+        @Override
+        public long sumSquaredDiff(int[] x, int[] y) {
+            long sum = 0;
+            for (int i = 0; i < x.length; i++) {
+                int diff = x[i] - y[i];
+                sum += diff * diff;
+            }
+            return sum;
+        }
+
+        @Override
+        public long sum(byte[] data, int off, int n) {
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += data[off + i] & 0xFF;
+            }
+            return sum;
+        }
+
+        @Override
+        public long dot(byte[] data, int offA, int offB, int n) {
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += (data[offA + i] & 0xFF) * (data[offB + i] & 0xFF);
+            }
+            return sum;
+        }
+
+        @Override
+        public long sumSquaredDiff(byte[] data, int offA, int offB, int n) {
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                int diff = (data[offA + i] & 0xFF) - (data[offB + i] & 0xFF);
+                sum += diff * diff;
+            }
+            return sum;
+        }
+
+        @Override
+        public String toString() {
+            return "scalaire";
+        }
+    }
+}
@@ -0,0 +1,145 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+/**
+ * Table précalculée des scores entre lignes voisines d'une image brouillée.
+ *
+ * Pour une clé (s, r), la ligne claire i+1 se trouve toujours à la position
+ * (p + 2s+1) % H si la ligne claire i est en p. Il suffit donc de connaître,
+ * pour chacun des 128 pas possibles, le score entre chaque ligne brouillée et
+ * celle située un pas plus loin : la table occupe au plus 128 x H valeurs au
+ * lieu de H x H, et le score d'une clé se calcule en O(H) par simple lecture.
+ *
+ * Les scores sont calculés avec LumaImage.euclideanDistance et
+ * RowStats.correlation (équivalents à keyBreak.euclideanDistance et
+ * keyBreak.pearsonCorrelation), puis additionnés dans le même ordre que
+ * scoreEuclidean / scorePearson : les résultats sont identiques au bit près.
+ */
+public class RowPairTable {
+
+    // Budget mémoire par défaut de la table (en octets)
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    private final LumaImage luma;
+    private final boolean pearson;
+    private final RowStats stats;
+    private final int height;
+
+    // Pour chaque S (0..127), indice de la bande correspondant au pas (2s+1) % H
+    private final int[] bandOfS;
+    // Bandes de scores : bands[b][p] = score(ligne p, ligne (p + pas) % H), null si hors budget
+    private final double[][] bands;
+    private final int[] bandStep;
+
+    private RowPairTable(LumaImage luma, boolean pearson, long maxBytes) {
+        this.luma = luma;
+        this.pearson = pearson;
+        this.stats = pearson ? RowStats.of(luma) : null;
+        this.height = luma.height();
+        this.bandOfS = new int[128];
+
+        // Plusieurs S peuvent donner le même pas modulo H (petites images) : une seule bande
+        int[] stepBand = new int[Math.max(height, 1)];
+        java.util.Arrays.fill(stepBand, -1);
+        int[] steps = new int[128];
+        int count = 0;
+        for (int s = 0; s < 128; s++) {
+            int step = height > 0 ? (2 * s + 1) % height : 0;
+            if (stepBand[step] < 0) {
+                stepBand[step] = count;
+                steps[count++] = step;
+            }
+            bandOfS[s] = stepBand[step];
+        }
+        this.bandStep = java.util.Arrays.copyOf(steps, count);
+
+        // Nombre de bandes matérialisées dans la limite du budget, le reste est calculé à la volée
+        long bandBytes = 8L * Math.max(height, 1);
+        int stored = (int) Math.min(count, maxBytes / bandBytes);
+        this.bands = new double[count][];
+        for (int b = 0; b < stored; b++) {
+            double[] band = new double[height];
+            for (int p = 0; p < height; p++) {
+                band[p] = computePair(p, (p + bandStep[b]) % height);
+            }
+            bands[b] = band;
+        }
+    }
+
+    // Construit la table des distances euclidiennes entre lignes voisines.
+    public static RowPairTable euclidean(LumaImage luma, long maxBytes) {
+        return new RowPairTable(luma, false, maxBytes);
+    }
+
+    // Construit la table des corrélations de Pearson entre lignes voisines.
+    public static RowPairTable pearson(LumaImage luma, long maxBytes) {
+        return new RowPairTable(luma, true, maxBytes);
+    }
+
+    // Idem à partir d'une matrice rgb2gl.
+    public static RowPairTable euclidean(int[][] matrix, long maxBytes) {
+        return euclidean(LumaImage.fromMatrix(matrix), maxBytes);
+    }
+
+    // Idem à partir d'une matrice rgb2gl.
+    public static RowPairTable pearson(int[][] matrix, long maxBytes) {
+        return pearson(LumaImage.fromMatrix(matrix), maxBytes);
+    }
+
+    // Indique si la table contient des corrélations de Pearson (sinon des distances).
+    public boolean isPearson() {
+        return pearson;
+    }
+
+    // Nombre d'octets effectivement occupés par les bandes matérialisées.
+    public long memoryBytes() {
+        long total = 0;
+        for (double[] band : bands) {
+            if (band != null) {
+                total += 8L * band.length;
+            }
+        }
+        return total;
+    }
+
+    private double computePair(int a, int b) {
+        return pearson
+                ? stats.correlation(luma, a, b)
+                : luma.euclideanDistance(a, b);
+    }
+
+    // Score entre la ligne brouillée p et celle située un pas (2s+1) plus loin.
+    public double pair(int s, int p) {
+        int b = bandOfS[s];
+        double[] band = bands[b];
+        if (band != null) {
+            return band[p];
+        }
+        return computePair(p, (p + bandStep[b]) % height);
+    }
+
+    // Score de la clé, identique à scoreEuclidean / scorePearson sur l'image débrouillée.
+    public double scoreKey(int key) {
+        if (height < 2) {
+            return 0.0;
+        }
+        int s = key & 0x7F;
+        int r = key >> 7;
+        int b = bandOfS[s];
+        int step = bandStep[b];
+        double[] band = bands[b];
+
+        double total = 0.0;
+        int p = r % height;
+        for (int i = 0; i < height - 1; i++) {
+            total += band != null ? band[p] : computePair(p, (p + step) % height);
+            p += step;
+            if (p >= height) {
+                p -= height;
+            }
+        }
+        return pearson ? total / (height - 1) : total;
+    }
+}
@@ -0,0 +1,150 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+/**
+ * Statistiques par ligne d'une image en niveaux de gris, pour la corrélation
+ * de Pearson.
+ *
+ * La moyenne et la norme centrée d'une ligne ne dépendent pas de la clé
+ * testée : elles sont calculées une seule fois à partir de la sortie de
+ * rgb2gl (ou d'un LumaImage). Pour chaque paire de lignes, il ne reste alors que la somme des
+ * produits croisés à calculer. Les formules sont celles de
+ * keyBreak.pearsonCorrelation, dans le même ordre : le résultat est identique
+ * au bit près.
+ */
+public class RowStats {
+
+    private final int width;
+    private final double[] mean;
+    private final double[] norm;
+    private final boolean[] flat;
+
+    private RowStats(int height, int width) {
+        this.width = width;
+        this.mean = new double[height];
+        this.norm = new double[height];
+        this.flat = new boolean[height];
+    }
+
+    /**
+     * Calcule les statistiques de chaque ligne de la matrice.
+     *
+     * @param matrix matrice des niveaux de gris (sortie de rgb2gl)
+     * @return statistiques des lignes
+     */
+    public static RowStats of(int[][] matrix) {
+        int height = matrix.length;
+        int width = height > 0 ? matrix[0].length : 0;
+        RowStats stats = new RowStats(height, width);
+        for (int y = 0; y < height; y++) {
+            int[] line = matrix[y];
+            double sum = RowKernels.sum(line);
+            double sum2 = RowKernels.dot(line, line);
+            double moyenne = sum / width;
+            stats.mean[y] = moyenne;
+            stats.norm[y] = Math.sqrt(sum2 - width * moyenne * moyenne);
+            stats.flat[y] = stats.norm[y] == 0;
+        }
+        return stats;
+    }
+
+    /**
+     * Statistiques de chaque ligne d'une image en niveaux de gris (mêmes
+     * valeurs que pour la matrice int[][] équivalente). Elles sont calculées
+     * une fois par image : les appels suivants rendent le même objet.
+     *
+     * @param luma image en niveaux de gris
+     * @return statistiques des lignes
+     */
+    public static RowStats of(LumaImage luma) {
+        return luma.rowStats();
+    }
+
+    // Calcul effectif, mémorisé par LumaImage.rowStats().
+    static RowStats compute(LumaImage luma) {
+        int height = luma.height();
+        int width = luma.width();
+        RowStats stats = new RowStats(height, width);
+        for (int y = 0; y < height; y++) {
+            double sum = luma.sum(y);
+            double sum2 = luma.dot(y, y);
+            double moyenne = sum / width;
+            stats.mean[y] = moyenne;
+            stats.norm[y] = Math.sqrt(sum2 - width * moyenne * moyenne);
+            stats.flat[y] = stats.norm[y] == 0;
+        }
+        return stats;
+    }
+
+    /**
+     * Statistiques relues (cache de LumaCache) : moyennes et normes
+     * enregistrées telles quelles, donc identiques au bit près.
+     */
+    static RowStats of(int width, double[] mean, double[] norm) {
+        if (mean.length != norm.length) {
+            throw new IllegalArgumentException("Moyennes et normes de tailles différentes");
+        }
+        RowStats stats = new RowStats(mean.length, width);
+        System.arraycopy(mean, 0, stats.mean, 0, mean.length);
+        System.arraycopy(norm, 0, stats.norm, 0, norm.length);
+        for (int y = 0; y < mean.length; y++) {
+            stats.flat[y] = norm[y] == 0;
+        }
+        return stats;
+    }
+
+    // Largeur des lignes.
+    public int width() {
+        return width;
+    }
+
+    // Nombre de lignes.
+    public int height() {
+        return mean.length;
+    }
+
+    // Moyenne de la ligne y.
+    public double mean(int y) {
+        return mean[y];
+    }
+
+    // Norme centrée de la ligne y : sqrt(somme des (x - moyenne)²).
+    public double norm(int y) {
+        return norm[y];
+    }
+
+    // Vrai si la ligne y est uniforme (variance nulle).
+    public boolean isFlat(int y) {
+        return flat[y];
+    }
+
+    /**
+     * Corrélation de Pearson entre les lignes a et b de la matrice, identique à
+     * keyBreak.pearsonCorrelation(matrix[a], matrix[b]).
+     */
+    public double correlation(int[][] matrix, int a, int b) {
+        if (width == 0) {
+            return 0;
+        }
+        return correlation(RowKernels.dot(matrix[a], matrix[b]), a, b);
+    }
+
+    // Corrélation de Pearson entre les lignes a et b d'une image en niveaux de gris.
+    public double correlation(LumaImage luma, int a, int b) {
+        if (width == 0) {
+            return 0;
+        }
+        return correlation(luma.dot(a, b), a, b);
+    }
+
+    // Corrélation à partir de la somme des produits croisés des lignes a et b.
+    public double correlation(double sumXY, int a, int b) {
+        if (flat[a] || flat[b]) {
+            return 0;
+        }
+        double numerateur = sumXY - width * mean[a] * mean[b];
+        return numerateur / (norm[a] * norm[b]);
+    }
+}
@@ -0,0 +1,385 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Avancement d'une phase de recherche de clé : clés évaluées, meilleure clé
+ * connue, débit.
+ *
+ * Les moteurs (BoundedSearch, CoarseToFine, RotationSolver, ...) ne font
+ * aucun affichage dans leurs boucles : leurs scorers sont enveloppés par
+ * track / trackBounded, qui comptent les clés dans une variable locale au
+ * thread et ne publient le compte que toutes les FLUSH_KEYS clés. Les
+ * écouteurs enregistrés (addListener) reçoivent au plus un avancement toutes
+ * les PROGRESS_PERIOD_NANOS, chaque amélioration de la meilleure clé, et la
+ * fin de la phase.
+ *
+ * Chaque phase et chaque amélioration produisent aussi un événement JDK
+ * Flight Recorder (fr.sae.SearchPhase, fr.sae.BestKey), visibles dans JMC
+ * lors d'un enregistrement (java -XX:StartFlightRecording ...). Hors
+ * enregistrement, ils ne coûtent qu'un test.
+ */
+public final class SearchProgress {
+
+    // Nombre de clés évaluées par un thread avant publication de son compte
+    private static final int FLUSH_KEYS = 256;
+
+    // Intervalle minimal entre deux avancements envoyés aux écouteurs
+    private static final long PROGRESS_PERIOD_NANOS = 200_000_000L;
+
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    // Phase inactive : aucun comptage, scorers renvoyés tels quels.
+    public static final SearchProgress NONE = new SearchProgress(null, 0, true);
+
+    /**
+     * Écouteur d'avancement. Les méthodes peuvent être appelées depuis
+     * n'importe quel thread de recherche et doivent rester brèves.
+     */
+    public interface Listener {
+        default void phaseStarted(Snapshot snapshot) {
+        }
+
+        default void progress(Snapshot snapshot) {
+        }
+
+        default void improved(Snapshot snapshot) {
+        }
+
+        default void phaseEnded(Snapshot snapshot) {
+        }
+    }
+
+    // État d'une phase à un instant donné.
+    public static final class Snapshot {
+        public final String phase;
+        public final long keysScored;
+        public final long totalKeys;
+        public final int bestKey;
+        public final double bestScore;
+        public final double elapsedSeconds;
+
+        Snapshot(String phase, long keysScored, long totalKeys, int bestKey, double bestScore,
+                 double elapsedSeconds) {
+            this.phase = phase;
+            this.keysScored = keysScored;
+            this.totalKeys = totalKeys;
+            this.bestKey = bestKey;
+            this.bestScore = bestScore;
+            this.elapsedSeconds = elapsedSeconds;
+        }
+
+        public double keysPerSecond() {
+            return elapsedSeconds > 0 ? keysScored / elapsedSeconds : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            String best = bestKey < 0 ? "aucune" : bestKey + " (score " + String.format("%.6g", bestScore) + ")";
+            return String.format("[%s] %d/%d clés (%.1f %%), %.0f clés/s, meilleure: %s", phase, keysScored,
+                    totalKeys, totalKeys > 0 ? 100.0 * keysScored / totalKeys : 0.0, keysPerSecond(), best);
+        }
+    }
+
+    /**
+     * Affichage console limité dans le temps : au plus une ligne par
+     * intervalle, plus une ligne en fin de phase.
+     */
+    public static final class ConsoleListener implements Listener {
+        private final long intervalNanos;
+        private final AtomicLong nextPrint = new AtomicLong();
+
+        public ConsoleListener(double intervalSeconds) {
+            this.intervalNanos = (long) (intervalSeconds * 1e9);
+        }
+
+        @Override
+        public void phaseStarted(Snapshot snapshot) {
+            nextPrint.set(System.nanoTime() + intervalNanos);
+        }
+
+        @Override
+        public void progress(Snapshot snapshot) {
+            long now = System.nanoTime();
+            long next = nextPrint.get();
+            if (now >= next && nextPrint.compareAndSet(next, now + intervalNanos)) {
+                System.out.println(snapshot);
+            }
+        }
+
+        @Override
+        public void phaseEnded(Snapshot snapshot) {
+            System.out.println(snapshot);
+        }
+    }
+
+    @Name("fr.sae.SearchPhase")
+    @Label("Phase de recherche de clé")
+    @Category({"Brouillimg", "Recherche"})
+    static final class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Clés à évaluer")
+        long totalKeys;
+
+        @Label("Clés évaluées")
+        long keysScored;
+
+        @Label("Meilleure clé")
+        int bestKey;
+
+        @Label("Meilleur score")
+        double bestScore;
+
+        @Label("Clés par seconde")
+        double keysPerSecond;
+    }
+
+    @Name("fr.sae.BestKey")
+    @Label("Nouvelle meilleure clé")
+    @Description("La meilleure clé connue de la phase a changé")
+    @Category({"Brouillimg", "Recherche"})
+    static final class BestKeyEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Clé")
+        int key;
+
+        @Label("Score")
+        double score;
+
+        @Label("Clés évaluées")
+        long keysScored;
+    }
+
+    private final String phase;
+    private final long totalKeys;
+    private final boolean minimize;
+    private final boolean active;
+    private final long start = System.nanoTime();
+    private final LongAdder scored = new LongAdder();
+    private final AtomicLong nextProgress = new AtomicLong(start + PROGRESS_PERIOD_NANOS);
+    private final List<Tracker> trackers = new ArrayList<>();
+    private final PhaseEvent event = new PhaseEvent();
+    private int bestKey = -1;
+    private double bestScore;
+
+    private SearchProgress(String phase, long totalKeys, boolean minimize) {
+        this.phase = phase;
+        this.totalKeys = totalKeys;
+        this.minimize = minimize;
+        this.active = phase != null;
+    }
+
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * Démarre une phase de recherche.
+     * @param phase     nom de la phase (affiché et enregistré)
+     * @param totalKeys nombre de clés que la phase va évaluer
+     * @param minimize  true si le meilleur score est le plus petit
+     * @return l'avancement de la phase, à terminer par finish()
+     */
+    public static SearchProgress start(String phase, long totalKeys, boolean minimize) {
+        SearchProgress progress = new SearchProgress(phase, totalKeys, minimize);
+        progress.event.begin();
+        Snapshot snapshot = progress.snapshot();
+        for (Listener listener : LISTENERS) {
+            listener.phaseStarted(snapshot);
+        }
+        return progress;
+    }
+
+    // Scorers comptés : même score, même ordre d'appel.
+    public Supplier<ParallelKeySearch.KeyScorer> track(Supplier<? extends ParallelKeySearch.KeyScorer> factory) {
+        if (!active) {
+            return factory::get;
+        }
+        return () -> {
+            ParallelKeySearch.KeyScorer scorer = factory.get();
+            Tracker tracker = register(new Tracker());
+            return key -> tracker.offer(key, scorer.score(key));
+        };
+    }
+
+    /**
+     * Scorers bornés comptés. Un score abandonné est strictement moins bon
+     * que la borne, elle-même jamais meilleure que la meilleure clé connue :
+     * il ne peut donc pas passer pour une amélioration.
+     */
+    public Supplier<ParallelKeySearch.BoundedKeyScorer> trackBounded(
+            Supplier<? extends ParallelKeySearch.BoundedKeyScorer> factory) {
+        if (!active) {
+            return factory::get;
+        }
+        return () -> {
+            ParallelKeySearch.BoundedKeyScorer scorer = factory.get();
+            Tracker tracker = register(new Tracker());
+            return new ParallelKeySearch.BoundedKeyScorer() {
+                @Override
+                public double score(int key) {
+                    return tracker.offer(key, scorer.score(key));
+                }
+
+                @Override
+                public double score(int key, double bound) {
+                    return tracker.offer(key, scorer.score(key, bound));
+                }
+            };
+        };
+    }
+
+    /**
+     * Compte keys clés évaluées hors des scorers suivis (par exemple les 256
+     * valeurs de R d'une passe de RotationSolver).
+     * @param keys nombre de clés
+     */
+    public void scored(long keys) {
+        if (active) {
+            scored.add(keys);
+            maybeReport();
+        }
+    }
+
+    /**
+     * Propose une clé et son score comme meilleure clé de la phase ; à score
+     * égal, la plus petite clé est gardée.
+     * @param key   clé évaluée
+     * @param score son score
+     */
+    public void offer(int key, double score) {
+        if (!active) {
+            return;
+        }
+        Snapshot snapshot;
+        synchronized (this) {
+            boolean better = bestKey < 0 || (minimize ? score < bestScore : score > bestScore)
+                    || (score == bestScore && key < bestKey);
+            if (!better) {
+                return;
+            }
+            bestKey = key;
+            bestScore = score;
+            snapshot = snapshot();
+        }
+        BestKeyEvent improved = new BestKeyEvent();
+        if (improved.shouldCommit()) {
+            improved.phase = phase;
+            improved.key = key;
+            improved.score = score;
+            improved.keysScored = snapshot.keysScored;
+            improved.commit();
+        }
+        for (Listener listener : LISTENERS) {
+            listener.improved(snapshot);
+        }
+    }
+
+    // État courant (les comptes locaux pas encore publiés n'y figurent pas).
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(phase, scored.sum(), totalKeys, bestKey, bestScore, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Termine la phase, une fois tous les threads de recherche arrêtés :
+     * publie les derniers comptes, enregistre l'événement JFR et prévient
+     * les écouteurs.
+     * @return l'état final de la phase
+     */
+    public Snapshot finish() {
+        if (!active) {
+            return null;
+        }
+        synchronized (trackers) {
+            for (Tracker tracker : trackers) {
+                tracker.flush();
+            }
+        }
+        Snapshot snapshot = snapshot();
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.totalKeys = totalKeys;
+            event.keysScored = snapshot.keysScored;
+            event.bestKey = snapshot.bestKey;
+            event.bestScore = snapshot.bestScore;
+            event.keysPerSecond = snapshot.keysPerSecond();
+            event.commit();
+        }
+        for (Listener listener : LISTENERS) {
+            listener.phaseEnded(snapshot);
+        }
+        return snapshot;
+    }
+
+    private Tracker register(Tracker tracker) {
+        synchronized (trackers) {
+            trackers.add(tracker);
+        }
+        return tracker;
+    }
+
+    // Envoie un avancement aux écouteurs si la période est écoulée (un seul thread l'envoie).
+    private void maybeReport() {
+        long now = System.nanoTime();
+        long next = nextProgress.get();
+        if (now < next || !nextProgress.compareAndSet(next, now + PROGRESS_PERIOD_NANOS) || LISTENERS.isEmpty()) {
+            return;
+        }
+        Snapshot snapshot = snapshot();
+        for (Listener listener : LISTENERS) {
+            listener.progress(snapshot);
+        }
+    }
+
+    /**
+     * Compteur d'un thread : clés évaluées depuis la dernière publication et
+     * meilleure clé vue localement (seules ses améliorations sont proposées
+     * à la phase).
+     */
+    private final class Tracker {
+        private int pending;
+        private int localKey = -1;
+        private double localScore;
+
+        double offer(int key, double score) {
+            if (localKey < 0 || (minimize ? score < localScore : score > localScore)
+                    || (score == localScore && key < localKey)) {
+                localKey = key;
+                localScore = score;
+                SearchProgress.this.offer(key, score);
+            }
+            if (++pending == FLUSH_KEYS) {
+                flush();
+                maybeReport();
+            }
+            return score;
+        }
+
+        void flush() {
+            scored.add(pending);
+            pending = 0;
+        }
+    }
+}
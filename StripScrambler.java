@@ -0,0 +1,169 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.Deflater;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Brouillage / débrouillage en flux, pour les images plus grandes que le tas.
+ *
+ * L'image n'est jamais chargée en entier :
+ *  1. l'entrée est lue par bandes horizontales (ImageReadParam.setSourceRegion)
+ *     et chaque ligne est recopiée, en octets RGB(A), dans un fichier
+ *     temporaire brut (une ligne = largeur x composantes octets) ;
+ *  2. la sortie est produite par bandes : pour chaque ligne de la bande, la
+ *     ligne source voulue par la permutation est relue dans le fichier brut
+ *     (lecture positionnée), puis la bande est écrite en PNG au fil de l'eau.
+ *
+ * La mémoire utilisée est bornée par le budget (hauteur des bandes), pas par
+ * la taille de l'image. Le décodage d'une bande repart du début du flux pour
+ * la plupart des formats (PNG, JPEG) : plus le budget est grand, moins il y a
+ * de bandes et moins le décodage est répété.
+ */
+public class StripScrambler {
+
+    // Budget mémoire par défaut (octets)
+    public static final long DEFAULT_BUDGET = 64L << 20;
+
+    /**
+     * Brouille ou débrouille une image en flux.
+     *
+     * @param input       image d'entrée (tout format lisible par ImageIO)
+     * @param output      image de sortie (PNG)
+     * @param key         clé de brouillage (15 bits)
+     * @param unscramble  true pour débrouiller, false pour brouiller
+     * @param budgetBytes mémoire maximale consacrée aux bandes
+     */
+    public static void process(File input, File output, int key, boolean unscramble, long budgetBytes)
+            throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(input)) {
+            if (iis == null) {
+                throw new IOException("Impossible d'ouvrir: " + input);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                throw new IOException("Format d’image non reconnu: " + input);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                process(reader, output, key, unscramble, budgetBytes);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static void process(ImageReader reader, File output, int key, boolean unscramble, long budgetBytes)
+            throws IOException {
+        final int width = reader.getWidth(0);
+        final int height = reader.getHeight(0);
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        boolean alpha = type != null && type.getColorModel().hasAlpha();
+        int channels = alpha ? 4 : 3;
+        long rowBytes = (long) width * channels;
+
+        // Deux bandes au plus en mémoire : la bande décodée (4 octets/pixel) et la bande à écrire
+        long maxRows = Math.min(budgetBytes / (2L * width * 4), (Integer.MAX_VALUE - 8) / rowBytes);
+        int stripRows = (int) Math.max(1, Math.min(height, maxRows));
+
+        Path spill = Files.createTempFile("brouillimg", ".raw");
+        try (FileChannel channel = FileChannel.open(spill, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)) {
+            spillRows(reader, channel, width, height, channels, stripRows);
+
+            int[] perm = Brouillimg.generatePermutation(height, key);
+            // Ligne source de chaque ligne de sortie
+            int[] srcRows = unscramble ? perm : RasterRows.invert(perm);
+
+            byte[] strip = new byte[(int) (rowBytes * stripRows)];
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(output.toPath()), 1 << 16)) {
+                PngStreamWriter png = new PngStreamWriter(os, width, height, alpha, Deflater.DEFAULT_COMPRESSION);
+                for (int y0 = 0; y0 < height; y0 += stripRows) {
+                    int n = Math.min(stripRows, height - y0);
+                    // Rassemble les lignes de la bande, puis les écrit dans l'ordre
+                    for (int k = 0; k < n; k++) {
+                        int src = srcRows[y0 + k];
+                        if (src < 0) {
+                            // Ligne que la clé n'atteint pas : laissée vide
+                            Arrays.fill(strip, (int) (k * rowBytes), (int) ((k + 1) * rowBytes), (byte) 0);
+                        } else {
+                            readFully(channel, strip, (int) (k * rowBytes), (int) rowBytes, src * rowBytes);
+                        }
+                    }
+                    for (int k = 0; k < n; k++) {
+                        png.writeRow(strip, (int) (k * rowBytes));
+                    }
+                }
+                png.close();
+            }
+        } finally {
+            Files.deleteIfExists(spill);
+        }
+    }
+
+    // Décode l'entrée bande par bande et recopie ses lignes, en octets RGB(A), dans le fichier brut.
+    private static void spillRows(ImageReader reader, FileChannel channel, int width, int height, int channels,
+                                  int stripRows) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        int[] argb = new int[width];
+        ByteBuffer line = ByteBuffer.allocate(width * channels);
+        long position = 0;
+        for (int y0 = 0; y0 < height; y0 += stripRows) {
+            int n = Math.min(stripRows, height - y0);
+            param.setSourceRegion(new Rectangle(0, y0, width, n));
+            BufferedImage strip = reader.read(0, param);
+            for (int k = 0; k < n; k++) {
+                strip.getRGB(0, k, width, 1, argb, 0, width);
+                line.clear();
+                packRow(argb, channels, line.array());
+                while (line.hasRemaining()) {
+                    position += channel.write(line, position);
+                }
+            }
+        }
+    }
+
+    // Convertit une ligne ARGB en octets R, G, B (, A).
+    static void packRow(int[] argb, int channels, byte[] out) {
+        int j = 0;
+        for (int pixel : argb) {
+            out[j++] = (byte) (pixel >> 16);
+            out[j++] = (byte) (pixel >> 8);
+            out[j++] = (byte) pixel;
+            if (channels == 4) {
+                out[j++] = (byte) (pixel >>> 24);
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, byte[] dst, int off, int len, long position)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(dst, off, len);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + (buffer.position() - off));
+            if (read < 0) {
+                throw new IOException("Fin de fichier inattendue");
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.lang.reflect.Array;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Brouillage par lignes, par colonnes ou par tuiles, avec la même clé et le
+ * même ordonnancement que Brouillimg (scrambledId) :
+ *
+ *   ROWS    : la ligne y va en ligne perm[y]            (perm sur H lignes)
+ *   COLUMNS : la colonne x va en colonne perm[x]        (perm sur W colonnes)
+ *   TILES   : la tuile t (ordre ligne par ligne) va à la place perm[t]
+ *             (perm sur le nombre de tuiles entières ; les bandes de bord
+ *             plus petites qu'une tuile restent en place)
+ *
+ * Les pixels sont copiés dans les tableaux du DataBuffer, jamais par
+ * getRGB / setRGB. Une colonne n'est jamais parcourue de haut en bas (un saut
+ * d'une ligne entière à chaque pixel) : chaque ligne de sortie est écrite
+ * d'un bout à l'autre à partir de la ligne source correspondante, qui reste
+ * en cache. En mode tuiles, le travail est découpé en bandes d'une tuile de
+ * haut, et chaque ligne d'une bande est assemblée à partir de segments
+ * contigus des tuiles sources. Les bandes de lignes sont réparties sur les
+ * threads ; chaque pixel de sortie n'est écrit que par un thread.
+ */
+public class TiledScrambler {
+
+    // Sens de découpe de l'image.
+    public enum Mode {
+        ROWS, COLUMNS, TILES;
+
+        // "rows", "columns" ou "tiles" (ou leurs équivalents français)
+        public static Mode parse(String name) {
+            switch (name.toLowerCase()) {
+                case "rows":
+                case "lignes":
+                    return ROWS;
+                case "columns":
+                case "colonnes":
+                    return COLUMNS;
+                case "tiles":
+                case "tuiles":
+                    return TILES;
+                default:
+                    throw new IllegalArgumentException("Mode inconnu: " + name);
+            }
+        }
+    }
+
+    // Côté des tuiles par défaut : 64 x 64 pixels RGB = 12 Ko, tient en cache L1/L2
+    public static final int DEFAULT_TILE = 64;
+
+    /**
+     * @param img     image claire
+     * @param key     clé (15 bits)
+     * @param mode    lignes, colonnes ou tuiles
+     * @param tile    côté des tuiles (mode TILES)
+     * @param threads nombre de threads (1 = séquentiel)
+     * @return image brouillée, de même type que img
+     */
+    public static BufferedImage scramble(BufferedImage img, int key, Mode mode, int tile, int threads) {
+        return permute(img, key, mode, tile, false, threads);
+    }
+
+    // Opération inverse de scramble, avec la même clé.
+    public static BufferedImage unscramble(BufferedImage img, int key, Mode mode, int tile, int threads) {
+        return permute(img, key, mode, tile, true, threads);
+    }
+
+    private static BufferedImage permute(BufferedImage img, int key, Mode mode, int tile, boolean inverse,
+                                         int threads) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        BufferedImage out = RasterRows.createCompatible(img);
+        switch (mode) {
+            case ROWS: {
+                RasterRows.copyRows(img, out, sources(height, key, inverse), threads);
+                return out;
+            }
+            case COLUMNS: {
+                int[] srcCols = sources(width, key, inverse);
+                PixelCopy copy = PixelCopy.of(img.getRaster(), out.getRaster());
+                forEachBand(height, threads, y -> copy.gatherRow(y, y, srcCols));
+                return out;
+            }
+            case TILES: {
+                if (tile < 1) {
+                    throw new IllegalArgumentException("Taille de tuile invalide: " + tile);
+                }
+                int tilesX = width / tile;
+                int tilesY = height / tile;
+                if (tilesX * tilesY == 0) {
+                    // Image plus petite qu'une tuile : rien à permuter
+                    RasterRows.copyRows(img, out, identity(height), 1);
+                    return out;
+                }
+                int[] srcTiles = sources(tilesX * tilesY, key, inverse);
+                PixelCopy copy = PixelCopy.of(img.getRaster(), out.getRaster());
+                // Bandes de bord (hors tuiles entières) recopiées telles quelles
+                int edge = width - tilesX * tile;
+                forEachBand(tilesY + 1, threads, ty -> {
+                    int y0 = ty * tile;
+                    int y1 = Math.min(height, y0 + tile);
+                    for (int y = y0; y < y1; y++) {
+                        if (ty == tilesY) {
+                            copy.segment(y, 0, y, 0, width);
+                            continue;
+                        }
+                        int dy = y - y0;
+                        for (int tx = 0; tx < tilesX; tx++) {
+                            int src = srcTiles[ty * tilesX + tx];
+                            copy.segment(src / tilesX * tile + dy, src % tilesX * tile, y, tx * tile, tile);
+                        }
+                        if (edge > 0) {
+                            copy.segment(y, tilesX * tile, y, tilesX * tile, edge);
+                        }
+                    }
+                });
+                return out;
+            }
+            default:
+                throw new IllegalArgumentException("Mode inconnu: " + mode);
+        }
+    }
+
+    /**
+     * Pour chaque position de sortie, l'indice source (perm inverse au
+     * brouillage, perm au débrouillage). Au brouillage, une clé dont le pas
+     * 2s+1 a un facteur commun avec size enverrait deux éléments au même
+     * endroit : elle est refusée plutôt que de perdre des pixels.
+     */
+    private static int[] sources(int size, int key, boolean inverse) {
+        int[] perm = Brouillimg.generatePermutation(size, key);
+        if (inverse) {
+            return perm;
+        }
+        if (!RasterRows.isPermutation(perm)) {
+            throw new IllegalArgumentException("La clé " + key + " (pas " + (2 * (key & 0x7F) + 1)
+                    + ") ne permute pas les " + size + " éléments : brouillage impossible, choisissez une autre clé");
+        }
+        return RasterRows.invert(perm);
+    }
+
+    private static int[] identity(int size) {
+        int[] id = new int[size];
+        for (int i = 0; i < size; i++) {
+            id[i] = i;
+        }
+        return id;
+    }
+
+    // Tâche d'une bande (une ligne, ou une bande de tuiles).
+    private interface Band {
+        void run(int band);
+    }
+
+    private static void forEachBand(int bands, int threads, Band task) {
+        if (threads <= 1) {
+            for (int b = 0; b < bands; b++) {
+                task.run(b);
+            }
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> IntStream.range(0, bands).parallel().forEach(task::run)).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Copie de pixels entre deux rasters de même organisation : directement
+     * dans les tableaux du DataBuffer (octets ou entiers) si possible, sinon
+     * par getDataElements / setDataElements ligne par ligne.
+     */
+    private abstract static class PixelCopy {
+
+        // Recopie width pixels de (srcX, srcY) vers (dstX, dstY).
+        abstract void segment(int srcY, int srcX, int dstY, int dstX, int width);
+
+        // Ligne dstY : le pixel x vient du pixel srcCols[x] de la ligne srcY.
+        abstract void gatherRow(int srcY, int dstY, int[] srcCols);
+
+        static PixelCopy of(WritableRaster in, WritableRaster out) {
+            PixelCopy direct = direct(in, out);
+            return direct != null ? direct : new ElementsCopy(in, out);
+        }
+
+        private static PixelCopy direct(WritableRaster in, WritableRaster out) {
+            if (in.getSampleModelTranslateX() != 0 || in.getSampleModelTranslateY() != 0
+                    || out.getSampleModelTranslateX() != 0 || out.getSampleModelTranslateY() != 0) {
+                return null;
+            }
+            DataBuffer dbIn = in.getDataBuffer();
+            DataBuffer dbOut = out.getDataBuffer();
+            SampleModel sm = in.getSampleModel();
+            if (dbIn.getNumBanks() != 1 || dbOut.getNumBanks() != 1 || !sm.equals(out.getSampleModel())) {
+                return null;
+            }
+            if (sm instanceof SinglePixelPackedSampleModel
+                    && dbIn instanceof DataBufferInt && dbOut instanceof DataBufferInt) {
+                return new IntCopy(((DataBufferInt) dbIn).getData(), dbIn.getOffset(),
+                        ((DataBufferInt) dbOut).getData(), dbOut.getOffset(),
+                        ((SinglePixelPackedSampleModel) sm).getScanlineStride());
+            }
+            if (sm instanceof ComponentSampleModel
+                    && dbIn instanceof DataBufferByte && dbOut instanceof DataBufferByte) {
+                ComponentSampleModel csm = (ComponentSampleModel) sm;
+                for (int band : csm.getBandOffsets()) {
+                    if (band >= csm.getPixelStride()) {
+                        return null; // bandes non entrelacées
+                    }
+                }
+                return new ByteCopy(((DataBufferByte) dbIn).getData(), dbIn.getOffset(),
+                        ((DataBufferByte) dbOut).getData(), dbOut.getOffset(),
+                        csm.getScanlineStride(), csm.getPixelStride());
+            }
+            return null;
+        }
+    }
+
+    // Un entier par pixel (INT_RGB, INT_ARGB...).
+    private static final class IntCopy extends PixelCopy {
+        private final int[] in;
+        private final int offIn;
+        private final int[] out;
+        private final int offOut;
+        private final int stride;
+
+        IntCopy(int[] in, int offIn, int[] out, int offOut, int stride) {
+            this.in = in;
+            this.offIn = offIn;
+            this.out = out;
+            this.offOut = offOut;
+            this.stride = stride;
+        }
+
+        @Override
+        void segment(int srcY, int srcX, int dstY, int dstX, int width) {
+            System.arraycopy(in, offIn + srcY * stride + srcX, out, offOut + dstY * stride + dstX, width);
+        }
+
+        @Override
+        void gatherRow(int srcY, int dstY, int[] srcCols) {
+            int src = offIn + srcY * stride;
+            int dst = offOut + dstY * stride;
+            for (int x = 0; x < srcCols.length; x++) {
+                out[dst + x] = in[src + srcCols[x]];
+            }
+        }
+    }
+
+    // pixelStride octets consécutifs par pixel (3BYTE_BGR, 4BYTE_ABGR, BYTE_GRAY...).
+    private static final class ByteCopy extends PixelCopy {
+        private final byte[] in;
+        private final int offIn;
+        private final byte[] out;
+        private final int offOut;
+        private final int stride;
+        private final int pixel;
+
+        ByteCopy(byte[] in, int offIn, byte[] out, int offOut, int stride, int pixel) {
+            this.in = in;
+            this.offIn = offIn;
+            this.out = out;
+            this.offOut = offOut;
+            this.stride = stride;
+            this.pixel = pixel;
+        }
+
+        @Override
+        void segment(int srcY, int srcX, int dstY, int dstX, int width) {
+            System.arraycopy(in, offIn + srcY * stride + srcX * pixel, out, offOut + dstY * stride + dstX * pixel,
+                    width * pixel);
+        }
+
+        @Override
+        void gatherRow(int srcY, int dstY, int[] srcCols) {
+            int src = offIn + srcY * stride;
+            int dst = offOut + dstY * stride;
+            if (pixel == 3) {
+                // Cas le plus courant (3BYTE_BGR) : boucle déroulée
+                for (int x = 0; x < srcCols.length; x++, dst += 3) {
+                    int s = src + srcCols[x] * 3;
+                    out[dst] = in[s];
+                    out[dst + 1] = in[s + 1];
+                    out[dst + 2] = in[s + 2];
+                }
+                return;
+            }
+            for (int x = 0; x < srcCols.length; x++, dst += pixel) {
+                int s = src + srcCols[x] * pixel;
+                for (int c = 0; c < pixel; c++) {
+                    out[dst + c] = in[s + c];
+                }
+            }
+        }
+    }
+
+    // Cas général : lignes lues et écrites par getDataElements / setDataElements.
+    private static final class ElementsCopy extends PixelCopy {
+        private final WritableRaster in;
+        private final WritableRaster out;
+        private final int elements;
+        // Tampons de ligne (source, destination) propres à chaque thread
+        private final ThreadLocal<Object[]> rows = new ThreadLocal<>();
+
+        ElementsCopy(WritableRaster in, WritableRaster out) {
+            this.in = in;
+            this.out = out;
+            this.elements = in.getNumDataElements();
+        }
+
+        @Override
+        void segment(int srcY, int srcX, int dstY, int dstX, int width) {
+            Object row = in.getDataElements(in.getMinX() + srcX, in.getMinY() + srcY, width, 1, null);
+            out.setDataElements(out.getMinX() + dstX, out.getMinY() + dstY, width, 1, row);
+        }
+
+        @Override
+        void gatherRow(int srcY, int dstY, int[] srcCols) {
+            int width = srcCols.length;
+            Object[] buffers = rows.get();
+            Object src = in.getDataElements(in.getMinX(), in.getMinY() + srcY, width, 1,
+                    buffers == null ? null : buffers[0]);
+            if (buffers == null) {
+                buffers = new Object[] {src, Array.newInstance(src.getClass().getComponentType(), Array.getLength(src))};
+                rows.set(buffers);
+            }
+            Object dst = buffers[1];
+            for (int x = 0; x < width; x++) {
+                System.arraycopy(src, srcCols[x] * elements, dst, x * elements, elements);
+            }
+            out.setDataElements(out.getMinX(), out.getMinY() + dstY, width, 1, dst);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * Arbre de points de vue (vantage-point tree) sur des lignes d'une LumaImage,
+ * pour la distance euclidienne entre lignes.
+ *
+ * Chaque nœud choisit une ligne « point de vue » et le rayon médian de ses
+ * distances aux autres lignes du sous-arbre : les plus proches vont à
+ * l'intérieur, les autres à l'extérieur. Une recherche des k plus proches
+ * voisins n'explore un côté que si la boule autour de la requête (rayon : k-ième
+ * distance trouvée) coupe la frontière, grâce à l'inégalité triangulaire. Sur
+ * des lignes d'image, qui varient peu d'une ligne à l'autre, la plupart des
+ * sous-arbres sont écartés et une requête coûte bien moins que n distances.
+ *
+ * L'arbre est stocké à plat : le sous-arbre d'un nœud est une plage
+ * [lo, hi) de ids, dont ids[lo] est le point de vue, [lo+1, mid) l'intérieur
+ * et [mid, hi) l'extérieur, avec mid = (lo + 1 + hi) / 2.
+ */
+public class VantagePointTree {
+
+    private final LumaImage points;
+    // Lignes de points, dans l'ordre de l'arbre
+    private final int[] ids;
+    // Rayon du nœud dont le point de vue est ids[i]
+    private final double[] radius;
+
+    /**
+     * Construit l'arbre sur toutes les lignes de points.
+     *
+     * @param points une ligne par point (signatures de lignes, par exemple)
+     */
+    public VantagePointTree(LumaImage points) {
+        this(points, identity(points.height()));
+    }
+
+    /**
+     * Construit l'arbre sur une partie des lignes.
+     *
+     * @param points lignes candidates
+     * @param rows   lignes indexées (tableau copié)
+     */
+    public VantagePointTree(LumaImage points, int[] rows) {
+        this.points = points;
+        this.ids = rows.clone();
+        this.radius = new double[ids.length];
+        double[] dist = new double[ids.length];
+        // Graine fixe : même arbre, donc mêmes voisins à égalité, d'une exécution à l'autre
+        build(0, ids.length, dist, new Random(0x5AE));
+    }
+
+    // Nombre de lignes indexées.
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Les k lignes indexées les plus proches de la ligne query parmi celles
+     * acceptées par filter, de la plus proche à la plus lointaine. La requête
+     * peut être une ligne non indexée de la même image.
+     *
+     * À distance égale, le départage se fait par un mélange des numéros de la
+     * requête et de la ligne : des lignes identiques (fond uni) ne choisissent
+     * pas toutes les mêmes k voisines, mais des voisines réparties dans le
+     * groupe.
+     *
+     * @param query  ligne requête
+     * @param k      nombre de voisins demandés
+     * @param filter lignes acceptées (null : toutes)
+     * @return numéros des lignes trouvées (au plus k)
+     */
+    public int[] nearest(int query, int k, IntPredicate filter) {
+        Neighbours found = new Neighbours(k, query);
+        if (k > 0) {
+            search(0, ids.length, query, filter, found);
+        }
+        return found.sorted();
+    }
+
+    private void build(int lo, int hi, double[] dist, Random random) {
+        while (hi - lo > 1) {
+            swap(lo, lo + random.nextInt(hi - lo), dist);
+            int vp = ids[lo];
+            for (int i = lo + 1; i < hi; i++) {
+                dist[i] = distance(points, vp, ids[i]);
+            }
+            int mid = (lo + 1 + hi) >>> 1;
+            select(lo + 1, hi, mid, dist);
+            radius[lo] = dist[mid];
+            build(lo + 1, mid, dist, random);
+            // Récursion sur l'intérieur, boucle sur l'extérieur
+            lo = mid;
+        }
+    }
+
+    // Place en k l'élément de rang k de [lo, hi) selon dist (plus petits avant, plus grands après).
+    private void select(int lo, int hi, int k, double[] dist) {
+        int left = lo;
+        int right = hi - 1;
+        while (left < right) {
+            double pivot = dist[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (dist[i] < pivot) {
+                    i++;
+                }
+                while (dist[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--, dist);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int a, int b, double[] dist) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double d = dist[a];
+        dist[a] = dist[b];
+        dist[b] = d;
+    }
+
+    private void search(int lo, int hi, int query, IntPredicate filter, Neighbours found) {
+        while (lo < hi) {
+            int vp = ids[lo];
+            double d = distance(points, query, vp);
+            if (filter == null || filter.test(vp)) {
+                found.offer(vp, d);
+            }
+            if (hi - lo == 1) {
+                return;
+            }
+            int mid = (lo + 1 + hi) >>> 1;
+            double r = radius[lo];
+            // Côté de la requête d'abord : la k-ième distance baisse plus vite
+            if (d < r) {
+                search(lo + 1, mid, query, filter, found);
+                if (d + found.bound() < r) {
+                    return;
+                }
+                lo = mid;
+            } else {
+                search(mid, hi, query, filter, found);
+                if (d - found.bound() > r) {
+                    return;
+                }
+                hi = mid;
+                lo = lo + 1;
+            }
+        }
+    }
+
+    private static double distance(LumaImage image, int a, int b) {
+        return Math.sqrt(image.sumSquaredDiff(a, b));
+    }
+
+    private static int[] identity(int n) {
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    // Les k meilleurs candidats, dans un tas dont la racine est le plus lointain.
+    private static final class Neighbours {
+        private final int[] rows;
+        private final double[] dist;
+        private final int query;
+        private int count;
+
+        Neighbours(int k, int query) {
+            this.rows = new int[k];
+            this.dist = new double[k];
+            this.query = query;
+        }
+
+        // Ordre des candidats : distance, puis mélange (requête, ligne) à égalité
+        private boolean farther(double d1, int row1, double d2, int row2) {
+            if (d1 != d2) {
+                return d1 > d2;
+            }
+            return Integer.compareUnsigned(mix(row1), mix(row2)) > 0;
+        }
+
+        private int mix(int row) {
+            int h = query * 0x9E3779B9 ^ row;
+            h ^= h >>> 16;
+            h *= 0x85EBCA6B;
+            h ^= h >>> 13;
+            return h;
+        }
+
+        // Rayon de recherche : k-ième distance, infini tant que le tas n'est pas plein.
+        double bound() {
+            return count < rows.length ? Double.POSITIVE_INFINITY : dist[0];
+        }
+
+        void offer(int row, double d) {
+            if (count < rows.length) {
+                int i = count++;
+                // Remontée
+                while (i > 0 && farther(d, row, dist[(i - 1) >>> 1], rows[(i - 1) >>> 1])) {
+                    int parent = (i - 1) >>> 1;
+                    rows[i] = rows[parent];
+                    dist[i] = dist[parent];
+                    i = parent;
+                }
+                rows[i] = row;
+                dist[i] = d;
+            } else if (farther(dist[0], rows[0], d, row)) {
+                siftDown(row, d, count);
+            }
+        }
+
+        // Remplace la racine par (row, d) dans un tas de taille n.
+        private void siftDown(int row, double d, int n) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= n) {
+                    break;
+                }
+                if (child + 1 < n && farther(dist[child + 1], rows[child + 1], dist[child], rows[child])) {
+                    child++;
+                }
+                if (!farther(dist[child], rows[child], d, row)) {
+                    break;
+                }
+                rows[i] = rows[child];
+                dist[i] = dist[child];
+                i = child;
+            }
+            rows[i] = row;
+            dist[i] = d;
+        }
+
+        int[] sorted() {
+            int[] out = new int[count];
+            // Retire la racine (le plus lointain) tant qu'il en reste
+            for (int n = count; n > 0; n--) {
+                out[n - 1] = rows[0];
+                int lastRow = rows[n - 1];
+                double lastDist = dist[n - 1];
+                siftDown(lastRow, lastDist, n - 1);
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import java.nio.ByteOrder;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Noyaux vectoriels (API Vector) utilisés par RowKernels quand le module
+ * jdk.incubator.vector est disponible.
+ *
+ * Compilation et exécution : javac/java --add-modules jdk.incubator.vector.
+ *
+ * Les produits tiennent dans un int (255 * 255). Chaque voie accumule en int
+ * sur un bloc d'au plus BLOCK éléments (BLOCK * 255² < 2^31), puis le bloc est
+ * réduit dans un long : les sommes sont exactes et égales à celles de la
+ * version scalaire. Pour les lignes d'octets, chaque chargement lit
+ * 4 * SPECIES.length() octets comme des int petit-boutistes : l'octet k de
+ * chaque voie est extrait par décalage de 8k bits et masque 0xFF (valeur non
+ * signée). Les deux lignes d'un produit sont lues aux mêmes positions, donc
+ * l'octet k de l'une est multiplié par l'octet k de l'autre. Aucune
+ * conversion de forme (B2I) n'est nécessaire : elle n'existe pas pour des
+ * octets de 32 bits sur des vecteurs de 128 bits (SSE, NEON), et n'est pas
+ * compilée en instructions vectorielles par tous les JDK.
+ */
+final class VectorKernels implements RowKernels.Impl {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    // Octets lus par chargement (4 par voie int)
+    private static final int STEP = 4 * SPECIES.length();
+    private static final int BLOCK = 8192;
+
+    // Charge STEP octets à partir de i, quatre par voie int.
+    private static IntVector load(byte[] data, int i) {
+        return IntVector.fromByteArray(SPECIES, data, i, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Octet k (0 à 3) de chaque voie, non signé.
+    private static IntVector part(IntVector words, int k) {
+        return k == 0 ? words.and(0xFF) : words.lanewise(VectorOperators.LSHR, 8 * k).and(0xFF);
+    }
+
+    @Override
+    public long sum(int[] x) {
+        int n = x.length;
+        long total = 0;
+        for (int start = 0; start < n; start += BLOCK) {
+            int end = Math.min(n, start + BLOCK);
+            int bound = start + SPECIES.loopBound(end - start);
+            IntVector acc = IntVector.zero(SPECIES);
+            int i = start;
+            for (; i < bound; i += SPECIES.length()) {
+                acc = acc.add(IntVector.fromArray(SPECIES, x, i));
+            }
+            long sum = acc.reduceLanes(VectorOperators.ADD);
+            for (; i < end; i++) {
+                sum += x[i];
+            }
+            total += sum;
+        }
+        return total;
+    }
+
+    @Override
+    public long dot(int[] x, int[] y) {
+        int n = x.length;
+        long total = 0;
+        for (int start = 0; start < n; start += BLOCK) {
+            int end = Math.min(n, start + BLOCK);
+            int bound = start + SPECIES.loopBound(end - start);
+            IntVector acc = IntVector.zero(SPECIES);
+            int i = start;
+            for (; i < bound; i += SPECIES.length()) {
+                IntVector vx = IntVector.fromArray(SPECIES, x, i);
+                IntVector vy = IntVector.fromArray(SPECIES, y, i);
+                acc = acc.add(vx.mul(vy));
+            }
+            long sum = acc.reduceLanes(VectorOperators.ADD);
+            for (; i < end; i++) {
+                sum += x[i] * y[i];
+            }
+            total += sum;
+        }
+        return total;
+    }
+
+    @Override
+    public long sumSquaredDiff(int[] x, int[] y) {
+        int n = x.length;
+        long total = 0;
+        for (int start = 0; start < n; start += BLOCK) {
+            int end = Math.min(n, start + BLOCK);
+            int bound = start + SPECIES.loopBound(end - start);
+            IntVector acc = IntVector.zero(SPECIES);
+            int i = start;
+            for (; i < bound; i += SPECIES.length()) {
+                IntVector diff = IntVector.fromArray(SPECIES, x, i).sub(IntVector.fromArray(SPECIES, y, i));
+                acc = acc.add(diff.mul(diff));
+            }
+            long sum = acc.reduceLanes(VectorOperators.ADD);
+            for (; i < end; i++) {
+                int diff = x[i] - y[i];
+                sum += diff * diff;
+            }
+            total += sum;
+        }
+        return total;
+    }
+
+    @Override
+    public long sum(byte[] data, int off, int n) {
+        long total = 0;
+        for (int start = 0; start < n; start += BLOCK) {
+            int end = Math.min(n, start + BLOCK);
+            int bound = start + (end - start) / STEP * STEP;
+            IntVector acc = IntVector.zero(SPECIES);
+            int i = start;
+            for (; i < bound; i += STEP) {
+                IntVector words = load(data, off + i);
+                for (int k = 0; k < 4; k++) {
+                    acc = acc.add(part(words, k));
+                }
+            }
+            long sum = acc.reduceLanes(VectorOperators.ADD);
+            for (; i < end; i++) {
+                sum += data[off + i] & 0xFF;
+            }
+            total += sum;
+        }
+        return total;
+    }
+
+    @Override
+    public long dot(byte[] data, int offA, int offB, int n) {
+        long total = 0;
+        for (int start = 0; start < n; start += BLOCK) {
+            int end = Math.min(n, start + BLOCK);
+            int bound = start + (end - start) / STEP * STEP;
+            IntVector acc = IntVector.zero(SPECIES);
+            int i = start;
+            for (; i < bound; i += STEP) {
+                IntVector a = load(data, offA + i);
+                IntVector b = load(data, offB + i);
+                for (int k = 0; k < 4; k++) {
+                    acc = acc.add(part(a, k).mul(part(b, k)));
+                }
+            }
+            long sum = acc.reduceLanes(VectorOperators.ADD);
+            for (; i < end; i++) {
+                sum += (data[offA + i] & 0xFF) * (data[offB + i] & 0xFF);
+            }
+            total += sum;
+        }
+        return total;
+    }
+
+    @Override
+    public long sumSquaredDiff(byte[] data, int offA, int offB, int n) {
+        long total = 0;
+        for (int start = 0; start < n; start += BLOCK) {
+            int end = Math.min(n, start + BLOCK);
+            int bound = start + (end - start) / STEP * STEP;
+            IntVector acc = IntVector.zero(SPECIES);
+            int i = start;
+            for (; i < bound; i += STEP) {
+                IntVector a = load(data, offA + i);
+                IntVector b = load(data, offB + i);
+                for (int k = 0; k < 4; k++) {
+                    IntVector diff = part(a, k).sub(part(b, k));
+                    acc = acc.add(diff.mul(diff));
+                }
+            }
+            long sum = acc.reduceLanes(VectorOperators.ADD);
+            for (; i < end; i++) {
+                int diff = (data[offA + i] & 0xFF) - (data[offB + i] & 0xFF);
+                sum += diff * diff;
+            }
+            total += sum;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "vectoriel (" + SPECIES + ")";
+    }
+}
@@ -0,0 +1,70 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Accès aux méthodes du projet depuis les bancs d'essai.
+ *
+ * JMH refuse les classes de banc dans le paquetage par défaut, et une classe
+ * d'un paquetage nommé ne peut pas importer celles du paquetage par défaut :
+ * les méthodes mesurées sont donc liées par MethodHandle. Les handles sont
+ * des constantes (static final) que le JIT intègre comme un appel direct.
+ * Les types du projet (LumaImage) sont vus comme des Object.
+ */
+final class App {
+
+    static final MethodHandle RGB2GL = find("Brouillimg", "rgb2gl", int[][].class, BufferedImage.class);
+    static final MethodHandle GENERATE_PERMUTATION =
+            find("Brouillimg", "generatePermutation", int[].class, int.class, int.class);
+    static final MethodHandle SCRAMBLE_LINES =
+            find("Brouillimg", "scrambleLines", BufferedImage.class, BufferedImage.class, int[].class);
+    static final MethodHandle UNSCRAMBLE_LINES =
+            find("Brouillimg", "unScrambleLines", BufferedImage.class, BufferedImage.class, int[].class);
+
+    static final MethodHandle EUCLIDEAN_DISTANCE =
+            find("keyBreak", "euclideanDistance", double.class, int[].class, int[].class);
+    static final MethodHandle PEARSON_CORRELATION =
+            find("keyBreak", "pearsonCorrelation", double.class, int[].class, int[].class);
+    static final MethodHandle PERMUTE_LINES =
+            find("keyBreak", "permuteLines", int[][].class, int[][].class, int[].class);
+    static final MethodHandle BREAK_KEY_EUCLIDEAN =
+            find("keyBreak", "breakKeyEuclidean", int.class, BufferedImage.class);
+    static final MethodHandle BREAK_KEY_PEARSON =
+            find("keyBreak", "breakKeyPearson", int.class, BufferedImage.class);
+    static final MethodHandle BREAK_KEY_ROTATION =
+            find("keyBreak", "breakKeyRotation", int.class, type("LumaImage"), boolean.class, int.class)
+                    .asType(MethodType.methodType(int.class, Object.class, boolean.class, int.class));
+    static final MethodHandle BREAK_KEY_OPTIMIZED =
+            find("keyBreakOptimise", "breakKeyOptimized", int[].class, BufferedImage.class);
+
+    static final MethodHandle LUMA_OF =
+            find("LumaImage", "of", type("LumaImage"), BufferedImage.class)
+                    .asType(MethodType.methodType(Object.class, BufferedImage.class));
+
+    private App() {
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle find(String owner, String name, Class<?> returnType, Class<?>... params) {
+        try {
+            return MethodHandles.publicLookup().findStatic(type(owner), name, MethodType.methodType(returnType, params));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * Images de test fournies avec le dépôt (512.jpg ... 8192.jpg).
+ *
+ * Le dossier est lu dans la propriété bench.images (par défaut le dossier
+ * courant, c'est-à-dire la racine du dépôt).
+ */
+final class Images {
+
+    // Clé utilisée pour produire les images brouillées des bancs d'essai
+    static final int KEY = 12345;
+
+    private Images() {
+    }
+
+    static BufferedImage load(String size) throws IOException {
+        File file = new File(System.getProperty("bench.images", "."), size + ".jpg");
+        BufferedImage img = ImageIO.read(file);
+        if (img == null) {
+            throw new IOException("Image de test introuvable: " + file.getAbsolutePath());
+        }
+        return img;
+    }
+
+    // Image brouillée avec KEY.
+    static BufferedImage scrambled(BufferedImage img) throws Throwable {
+        int[] perm = (int[]) App.GENERATE_PERMUTATION.invokeExact(img.getHeight(), KEY);
+        return (BufferedImage) App.SCRAMBLE_LINES.invokeExact(img, perm);
+    }
+}
@@ -0,0 +1,68 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion en niveaux de gris et permutation des lignes d'une image.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx4g"})
+public class ImagingBenchmark {
+
+    @Param({"512", "1024", "2048", "4096", "8192"})
+    public String size;
+
+    private BufferedImage image;
+    private BufferedImage scrambled;
+    private int[] perm;
+    private int[][] gray;
+
+    @Setup
+    public void setup() throws Throwable {
+        image = Images.load(size);
+        perm = (int[]) App.GENERATE_PERMUTATION.invokeExact(image.getHeight(), Images.KEY);
+        scrambled = Images.scrambled(image);
+        gray = (int[][]) App.RGB2GL.invokeExact(image);
+    }
+
+    @Benchmark
+    public int[][] rgb2gl() throws Throwable {
+        return (int[][]) App.RGB2GL.invokeExact(image);
+    }
+
+    @Benchmark
+    public BufferedImage scrambleLines() throws Throwable {
+        return (BufferedImage) App.SCRAMBLE_LINES.invokeExact(image, perm);
+    }
+
+    @Benchmark
+    public BufferedImage unScrambleLines() throws Throwable {
+        return (BufferedImage) App.UNSCRAMBLE_LINES.invokeExact(scrambled, perm);
+    }
+
+    @Benchmark
+    public int[][] permuteLines() throws Throwable {
+        return (int[][]) App.PERMUTE_LINES.invokeExact(gray, perm);
+    }
+}
@@ -0,0 +1,54 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scores entre deux lignes voisines (largeur = taille de l'image).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx4g"})
+public class KernelBenchmark {
+
+    @Param({"512", "1024", "2048", "4096", "8192"})
+    public String size;
+
+    private int[] line1;
+    private int[] line2;
+
+    @Setup
+    public void setup() throws Throwable {
+        int[][] gray = (int[][]) App.RGB2GL.invokeExact(Images.load(size));
+        line1 = gray[gray.length / 2];
+        line2 = gray[gray.length / 2 + 1];
+    }
+
+    @Benchmark
+    public double euclideanDistance() throws Throwable {
+        return (double) App.EUCLIDEAN_DISTANCE.invokeExact(line1, line2);
+    }
+
+    @Benchmark
+    public double pearsonCorrelation() throws Throwable {
+        return (double) App.PEARSON_CORRELATION.invokeExact(line1, line2);
+    }
+}
@@ -0,0 +1,67 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Recherches complètes de la clé sur les images brouillées avec Images.KEY.
+ *
+ * Une recherche dure de quelques centaines de millisecondes à plusieurs
+ * dizaines de secondes : chaque appel est mesuré séparément (SingleShotTime).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx4g"})
+public class KeyBreakBenchmark {
+
+    @Param({"512", "1024", "2048", "4096", "8192"})
+    public String size;
+
+    private BufferedImage scrambled;
+    private Object luma;
+
+    @Setup
+    public void setup() throws Throwable {
+        scrambled = Images.scrambled(Images.load(size));
+        luma = (Object) App.LUMA_OF.invokeExact(scrambled);
+    }
+
+    @Benchmark
+    public int breakKeyEuclidean() throws Throwable {
+        return (int) App.BREAK_KEY_EUCLIDEAN.invokeExact(scrambled);
+    }
+
+    @Benchmark
+    public int breakKeyPearson() throws Throwable {
+        return (int) App.BREAK_KEY_PEARSON.invokeExact(scrambled);
+    }
+
+    @Benchmark
+    public int breakKeyRotationEuclidean() throws Throwable {
+        return (int) App.BREAK_KEY_ROTATION.invokeExact(luma, false, 1);
+    }
+
+    @Benchmark
+    public int[] breakKeyOptimized() throws Throwable {
+        return (int[]) App.BREAK_KEY_OPTIMIZED.invokeExact(scrambled);
+    }
+}
@@ -5,26 +5,17 @@
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
 import javax.imageio.ImageIO;
 
 public class keyBreak {
 
     // Convertit une image RGB en niveaux de gris (GL).
     public static int[][] rgb2gl(BufferedImage inputRGB) {
-        final int height = inputRGB.getHeight();
-        final int width = inputRGB.getWidth();
-        int[][] outGL = new int[height][width];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int argb = inputRGB.getRGB(x, y);
-                int r = (argb >> 16) & 0xFF;
-                int g = (argb >> 8) & 0xFF;
-                int b = argb & 0xFF;
-                int gray = (r * 299 + g * 587 + b * 114) / 1000;
-                outGL[y][x] = gray;
-            }
-        }
-        return outGL;
+        return RasterRows.toGray(inputRGB);
     }
 
     // Calcule la corrélation de Pearson entre deux lignes.
@@ -33,21 +24,14 @@ public class keyBreak {
             return 0;
         }
 
-        double sumX = 0;
-        double sumY = 0;
-        double sumXY = 0;
-        double sumX2 = 0;
-        double sumY2 = 0;
+        // Sommes entières exactes (noyaux vectoriels si disponibles)
+        double sumX = RowKernels.sum(line1);
+        double sumY = RowKernels.sum(line2);
+        double sumXY = RowKernels.dot(line1, line2);
+        double sumX2 = RowKernels.dot(line1, line1);
+        double sumY2 = RowKernels.dot(line2, line2);
         int n = line1.length;
 
-        for (int i = 0; i < n; i++) {
-            sumX += line1[i];
-            sumY += line2[i];
-            sumXY += line1[i] * line2[i];
-            sumX2 += line1[i] * line1[i];
-            sumY2 += line2[i] * line2[i];
-        }
-
         double moyenneX = sumX / n;
         double moyenneY = sumY / n;
 
@@ -74,6 +58,23 @@ public class keyBreak {
         return count > 0 ? score / count : 0;
     }
 
+    // Score de Pearson de l'image débrouillée par perm, lu directement dans l'image brouillée.
+    public static double scorePearson(LumaImage scrambled, int[] perm) {
+        return scorePearson(scrambled, perm, RowStats.of(scrambled));
+    }
+
+    // Idem, avec les statistiques des lignes précalculées : seuls les produits croisés sont calculés.
+    public static double scorePearson(LumaImage scrambled, int[] perm, RowStats stats) {
+        double score = 0;
+        int count = 0;
+        for (int i = 0; i < perm.length - 1; i++) {
+            double corr = stats.correlation(scrambled, perm[i], perm[i + 1]);
+            score += corr;
+            count++;
+        }
+        return count > 0 ? score / count : 0;
+    }
+
     // Génère une permutation des entiers 0..size-1 en fonction d'une clé.
     public static int[] generatePermutation(int size, int key) {
         int[] scrambleTable = new int[size];
@@ -83,6 +84,14 @@ public class keyBreak {
         return scrambleTable;
     }
 
+    // Remplit out avec la permutation de la clé, sans allocation.
+    public static int[] generatePermutation(int size, int key, int[] out) {
+        for (int i = 0; i < size; i++) {
+            out[i] = scrambledId(i, size, key);
+        }
+        return out;
+    }
+
     // Renvoie la position de la ligne id dans l'image brouillée.
     public static int scrambledId(int id, int size, int key) {
         int s = key & 0x7F;
@@ -92,20 +101,13 @@ public class keyBreak {
 
     // Débrouille les lignes d'une image selon une permutation.
     public static BufferedImage unScrambleLines(BufferedImage inputImg, int[] perm) {
-        int width = inputImg.getWidth();
         int height = inputImg.getHeight();
         if (perm.length != height) {
             throw new IllegalArgumentException("Taille d'image <> taille permutation");
         }
-        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-
-        for (int y = 0; y < height; y++) {
-            int srcY = perm[y];
-            for (int x = 0; x < width; x++) {
-                int pixel = inputImg.getRGB(x, srcY);
-                out.setRGB(x, y, pixel);
-            }
-        }
+        // Même type et même ColorModel que l'image lue (pas de canal alpha ajouté)
+        BufferedImage out = RasterRows.createCompatible(inputImg);
+        RasterRows.copyRows(inputImg, out, perm, 1);
         return out;
     }
 
@@ -120,32 +122,129 @@ public class keyBreak {
         return permutedMatrix;
     }
 
+    /**
+     * Recherche en deux résolutions : toutes les clés sont évaluées sur l'image
+     * réduite d'un facteur factor en largeur (avec abandon des clés qui ne
+     * peuvent plus entrer parmi les k meilleures), puis les k meilleures en
+     * pleine résolution (voir CoarseToFine).
+     */
+    public static int breakKeyCoarse(LumaImage scrambledLuma, boolean pearson, int factor, int k, int threads) {
+        System.out.println("Méthode: " + (pearson ? "Corrélation de Pearson" : "Distance Euclidienne")
+                + ", deux résolutions (colonnes / " + factor + ", " + k + " candidats)");
+        int[] keys = new int[32768];
+        for (int key = 0; key < keys.length; key++) {
+            keys[key] = key;
+        }
+        SearchProgress progress = SearchProgress.start(pearson ? "pearson, deux résolutions"
+                : "euclidienne, deux résolutions", keys.length + k, !pearson);
+        CoarseToFine.Result result = CoarseToFine.search(scrambledLuma, factor, k, keys, !pearson, threads,
+                luma -> BoundedSearch.scorers(luma, pearson), progress);
+        progress.finish();
+        System.out.println(result);
+        System.out.println("\nScore final: " + String.format(pearson ? "%.6f" : "%.2f", result.score));
+        return result.key;
+    }
+
+    /**
+     * Recherche exhaustive par rotation : pour chaque S, les 256 valeurs de R
+     * sont évaluées en une seule passe sur les lignes (voir RotationSolver).
+     * Même clé et même score que breakKeyPearson / breakKeyEuclidean.
+     */
+    public static int breakKeyRotation(LumaImage scrambledLuma, boolean pearson, int threads) {
+        System.out.println("Méthode: " + (pearson ? "Corrélation de Pearson" : "Distance Euclidienne")
+                + ", une passe par valeur de S (rotation)");
+        SearchProgress progress = SearchProgress.start(pearson ? "pearson, rotation" : "euclidienne, rotation",
+                32768, !pearson);
+        ParallelKeySearch.Result result = RotationSolver.search(scrambledLuma, pearson, threads, progress);
+        progress.finish();
+        System.out.println("\nScore final: " + String.format(pearson ? "%.6f" : "%.2f", result.score));
+        return result.key;
+    }
+
+    /**
+     * Recherche répartie sur des processus travailleurs (voir
+     * DistributedKeySearch) : workers JVM locales sont lancées, d'autres
+     * peuvent se connecter sur port. Les clés sont distribuées par baux de
+     * leaseSize, les plus prometteuses en tête. Même clé que breakKeyPearson /
+     * breakKeyEuclidean.
+     */
+    public static int breakKeyDistributed(String imagePath, LumaImage scrambledLuma, boolean pearson, int workers,
+                                          int port, int leaseSize, int threads) {
+        System.out.println("Méthode: " + (pearson ? "Corrélation de Pearson" : "Distance Euclidienne")
+                + ", répartie par baux de " + leaseSize + " clés");
+        int[] keys = BoundedSearch.promisingKeys(scrambledLuma, pearson, 128, 256);
+        try (DistributedKeySearch.Coordinator coordinator = new DistributedKeySearch.Coordinator(port,
+                DistributedKeySearch.DEFAULT_LEASE_TIMEOUT_MILLIS)) {
+            System.out.println("Coordinateur à l'écoute sur le port " + coordinator.port() + ", " + workers
+                    + " travailleurs locaux");
+            coordinator.startLocalWorkers(workers, threads);
+            ParallelKeySearch.Result result = coordinator.search(imagePath, pearson, keys, leaseSize);
+            System.out.println("Baux réattribués: " + coordinator.reassignedLeases());
+            System.out.println("\nScore final: " + String.format(pearson ? "%.6f" : "%.2f", result.score));
+            return result.key;
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Recherche interrompue", e);
+        }
+    }
+
     // Tente de casser la clé avec Pearson en essayant toutes les clés possibles.
     public static int breakKeyPearson(BufferedImage scrambledImage) {
+        return breakKeyPearson(scrambledImage, false);
+    }
+
+    // Variante de breakKeyPearson, avec table des paires de lignes si useTable (même clé trouvée).
+    public static int breakKeyPearson(BufferedImage scrambledImage, boolean useTable) {
+        return breakKeyPearson(scrambledImage, useTable, 1);
+    }
+
+    // Variante de breakKeyPearson répartie sur threads cœurs (même clé qu'en séquentiel).
+    public static int breakKeyPearson(BufferedImage scrambledImage, boolean useTable, int threads) {
+        return breakKeyPearson(LumaImage.of(scrambledImage), useTable, threads);
+    }
+
+    // Variante de breakKeyPearson sur des niveaux de gris déjà extraits (conteneur brut par exemple).
+    public static int breakKeyPearson(LumaImage scrambledLuma, boolean useTable, int threads) {
         int maxKey = 0;
         double maxScore = -Double.MAX_VALUE;
-        int height = scrambledImage.getHeight();
 
         System.out.println("Méthode: Corrélation de Pearson");
         System.out.println("Test de 32768 clés...\n");
 
-        int[][] scrambledMatrix = rgb2gl(scrambledImage);
+        SearchProgress progress = SearchProgress.start("pearson", 32768, false);
+        if (!useTable) {
+            // Abandon anticipé des clés qui ne peuvent plus battre la meilleure (même clé trouvée)
+            BoundedSearch.Result result = BoundedSearch.search(scrambledLuma, true, 128, 256, threads, progress);
+            progress.finish();
+            System.out.println(result);
+            System.out.println("\nScore final: " + String.format("%.6f", result.score));
+            return result.key;
+        }
+
+        RowPairTable table = RowPairTable.pearson(scrambledLuma, RowPairTable.DEFAULT_MAX_BYTES);
+
+        if (threads > 1) {
+            System.out.println("Recherche parallèle sur " + threads + " threads");
+            ParallelKeySearch.Result result = ParallelKeySearch.search(0, 32768, threads, false,
+                    progress.track(() -> table::scoreKey));
+            progress.finish();
+            System.out.println("\nScore final: " + String.format("%.6f", result.score));
+            return result.key;
+        }
 
+        // Avancement et meilleure clé suivis par progress (affichage limité dans le temps)
+        ParallelKeySearch.KeyScorer scorer = progress.track(() -> table::scoreKey).get();
         for (int key = 0; key < 32768; key++) {
-            int[] perm = generatePermutation(height, key);
-            int[][] unscrambledMatrix = permuteLines(scrambledMatrix, perm);
-            double score = scorePearson(unscrambledMatrix);
+            double score = scorer.score(key);
 
             if (score > maxScore) {
                 maxScore = score;
                 maxKey = key;
-                System.out.println("Nouvelle meilleure clé: " + maxKey + " (score: " + String.format("%.6f", maxScore) + ")");
-            }
-
-            if (key % 4000 == 0 && key > 0) {
-                System.out.println("Progression: " + key + "/32768");
             }
         }
+        progress.finish();
 
         System.out.println("\nScore final: " + String.format("%.6f", maxScore));
         return maxKey;
@@ -157,11 +256,8 @@ public class keyBreak {
             throw new IllegalArgumentException("les lignes doivent avoir la même taille");
         }
 
-        double sum = 0.0;
-        for (int i = 0; i < x.length; i++) {
-            double diff = x[i] - y[i];
-            sum += diff * diff;
-        }
+        // Somme entière exacte (noyau vectoriel si disponible)
+        double sum = RowKernels.sumSquaredDiff(x, y);
         return Math.sqrt(sum);
     }
 
@@ -182,88 +278,424 @@ public class keyBreak {
         return totalScore;
     }
 
+    // Score euclidien de l'image débrouillée par perm, lu directement dans l'image brouillée.
+    public static double scoreEuclidean(LumaImage scrambled, int[] perm) {
+        int height = perm.length;
+        if (height < 2) {
+            return 0.0;
+        }
+        double totalScore = 0.0;
+        for (int i = 0; i < height - 1; i++) {
+            double distance = scrambled.euclideanDistance(perm[i], perm[i + 1]);
+            totalScore += distance;
+        }
+        return totalScore;
+    }
+
     // Tente de casser la clé avec la distance euclidienne en essayant toutes les clés possibles.
     public static int breakKeyEuclidean(BufferedImage scrambledImage) {
+        return breakKeyEuclidean(scrambledImage, false);
+    }
+
+    // Variante de breakKeyEuclidean, avec table des paires de lignes si useTable (même clé trouvée).
+    public static int breakKeyEuclidean(BufferedImage scrambledImage, boolean useTable) {
+        return breakKeyEuclidean(scrambledImage, useTable, 1);
+    }
+
+    // Variante de breakKeyEuclidean répartie sur threads cœurs (même clé qu'en séquentiel).
+    public static int breakKeyEuclidean(BufferedImage scrambledImage, boolean useTable, int threads) {
+        return breakKeyEuclidean(LumaImage.of(scrambledImage), useTable, threads);
+    }
+
+    // Variante de breakKeyEuclidean sur des niveaux de gris déjà extraits (conteneur brut par exemple).
+    public static int breakKeyEuclidean(LumaImage encryptedLuma, boolean useTable, int threads) {
         int bestKey = 0;
         double bestScore = Double.POSITIVE_INFINITY;
-        int height = scrambledImage.getHeight();
 
         System.out.println("Méthode: Distance Euclidienne");
         System.out.println("Test de 32768 clés...\n");
 
-        int[][] encryptedImageGL = rgb2gl(scrambledImage);
+        SearchProgress progress = SearchProgress.start("euclidienne", 32768, true);
+        if (!useTable) {
+            // Abandon anticipé des clés qui ne peuvent plus battre la meilleure (même clé trouvée)
+            BoundedSearch.Result result = BoundedSearch.search(encryptedLuma, false, 128, 256, threads, progress);
+            progress.finish();
+            System.out.println(result);
+            System.out.println("\nScore final: " + String.format("%.2f", result.score));
+            return result.key;
+        }
+
+        RowPairTable table = RowPairTable.euclidean(encryptedLuma, RowPairTable.DEFAULT_MAX_BYTES);
 
+        if (threads > 1) {
+            System.out.println("Recherche parallèle sur " + threads + " threads");
+            ParallelKeySearch.Result result = ParallelKeySearch.search(0, 32768, threads, true,
+                    progress.track(() -> table::scoreKey));
+            progress.finish();
+            System.out.println("\nScore final: " + String.format("%.2f", result.score));
+            return result.key;
+        }
+
+        // Avancement et meilleure clé suivis par progress (affichage limité dans le temps)
+        ParallelKeySearch.KeyScorer scorer = progress.track(() -> table::scoreKey).get();
         for (int key = 0; key < 32768; key++) {
-            int[] perm = generatePermutation(height, key);
-            int[][] decryptedImageGL = permuteLines(encryptedImageGL, perm);
-            double currentScore = scoreEuclidean(decryptedImageGL);
+            double currentScore = scorer.score(key);
 
             if (currentScore < bestScore) {
                 bestScore = currentScore;
                 bestKey = key;
-                System.out.println("Nouvelle meilleure clé: " + bestKey + " (score: " + String.format("%.2f", currentScore) + ")");
-            }
-
-            if (key % 4000 == 0 && key > 0) {
-                System.out.println("Progression: " + key + "/32768");
             }
         }
+        progress.finish();
 
         System.out.println("\nScore final: " + String.format("%.2f", bestScore));
         return bestKey;
     }
 
+    // Nom du fichier débrouillé écrit par main.
+    private static String outputPath(String method, int key, boolean raw) {
+        return "unscrambled_" + method + "_key" + key + (raw ? ".raw" : ".png");
+    }
+
+    /**
+     * Clé d'un résultat dans LumaCache : la méthode et les options qui
+     * changent la clé trouvée (recherche approchée, bande de colonnes,
+     * colonnes brouillées). Les autres recherches sont exactes et partagent
+     * la même entrée.
+     */
+    private static String cacheKey(boolean pearson, boolean columns, int coarse, int topK, boolean band,
+                                   int bandStart, int bandEnd, int columnStep) {
+        StringBuilder key = new StringBuilder(pearson ? "pearson" : "euclidean");
+        if (columns) {
+            key.append(",columns");
+        }
+        if (coarse > 0) {
+            key.append(",coarse=").append(coarse).append(",topk=").append(topK);
+        }
+        if (band) {
+            key.append(",cols=").append(bandStart).append(':').append(bandEnd).append(",sub=").append(columnStep);
+        }
+        return key.toString();
+    }
+
+    // Image relue pour l'écriture ; un fichier que ImageIO ne sait pas décoder est une erreur.
+    private static BufferedImage read(File imageFile) throws IOException {
+        BufferedImage image = ImageIO.read(imageFile);
+        if (image == null) {
+            throw new IOException("Format d’image non reconnu: " + imageFile);
+        }
+        return image;
+    }
+
+    // Écrit l'image débrouillée par key (image : image décodée, null pour la relire).
+    private static void writeUnscrambled(Profiler.Phases phases, File imageFile, BufferedImage image, boolean raw,
+                                         boolean columnsMode, int bestKey, String outputPath, int compressionLevel,
+                                         int nThreads) throws Exception {
+        if (columnsMode) {
+            phases.time("encode", () -> {
+                BufferedImage source = image;
+                if (raw) {
+                    try (RawImageFile rawImage = RawImageFile.open(imageFile.toPath(), false)) {
+                        source = rawImage.toImage();
+                    }
+                } else if (source == null) {
+                    source = read(imageFile);
+                }
+                BufferedImage unscrambledImage = TiledScrambler.unscramble(source, bestKey,
+                        TiledScrambler.Mode.COLUMNS, 0, nThreads);
+                if (raw) {
+                    RawImageFile.write(unscrambledImage, Path.of(outputPath), bestKey, 0);
+                    return true;
+                }
+                PngStreamWriter.write(unscrambledImage, new File(outputPath), compressionLevel, nThreads);
+                return true;
+            });
+        } else if (raw) {
+            // Débrouillage brut vers brut, par recopie de lignes entre projections
+            phases.time("encode", () -> {
+                try (RawImageFile rawImage = RawImageFile.open(imageFile.toPath(), false)) {
+                    RawImageFile.permute(rawImage, Path.of(outputPath), bestKey, true);
+                }
+                return null;
+            });
+        } else {
+            phases.time("encode", () -> {
+                BufferedImage scrambled = image != null ? image : read(imageFile);
+                int[] perm = generatePermutation(scrambled.getHeight(), bestKey);
+                // L'image décodée n'est plus utilisée : ses lignes sont remises en ordre sur place
+                BufferedImage unscrambledImage = scrambled;
+                if (RasterRows.isPermutation(perm)) {
+                    RasterRows.permuteRowsInPlace(scrambled, perm);
+                } else {
+                    unscrambledImage = unScrambleLines(scrambled, perm);
+                }
+                PngStreamWriter.write(unscrambledImage, new File(outputPath), compressionLevel, nThreads);
+                return true;
+            });
+        }
+    }
+
     public static void main(String[] args) throws Exception {
         if (args.length < 2) {
-            System.err.println("Usage: java cassagePearson <image_brouillée> <méthode>");
+            System.err.println("Usage: java cassagePearson <image_brouillée(.png|.raw)> <méthode> [table] [threads=N]");
             System.err.println("  <méthode> peut être:");
             System.err.println("    - pearson    : Corrélation de Pearson");
             System.err.println("    - euclidean  : Distance Euclidienne");
+            System.err.println("  table : précalcule les scores entre lignes voisines (recherche en O(H) par clé)");
+            System.err.println("  threads=N : répartit la recherche sur N threads (N=0 : un par cœur)");
+            System.err.println("  columns : l'image a été brouillée par colonnes (Brouillimg mode=columns)");
+            System.err.println("  rotation : une passe sur les lignes par valeur de S, pour les 256 valeurs de R");
+            System.err.println("  coarse=F [topk=K] : évalue toutes les clés sur l'image réduite de F en largeur,");
+            System.err.println("                      puis les K meilleures (64 par défaut) en pleine résolution");
+            System.err.println("  warmup=W runs=N : W recherches de chauffe puis N mesurées (min/médiane/p90/p99/max)");
+            System.err.println("  workers=N [port=P] [lease=L] : recherche répartie sur N JVM travailleuses locales");
+            System.err.println("                      (et celles lancées par DistributedKeySearch worker sur le port P),");
+            System.err.println("                      par baux de L clés (1024 par défaut)");
+            System.err.println("  progress=T : avancement affiché au plus toutes les T secondes (0 : désactivé)");
+            System.err.println("  cols=X0:X1 sub=N : ne décode que les colonnes X0..X1-1, une sur N (scores approchés)");
+            System.err.println("  png=L : niveau de compression du PNG écrit (0..9, 4 par défaut), compressé sur N threads");
+            System.err.println("  cache[=DIR] : niveaux de gris et résultats gardés par contenu d'image (" + LumaCache.DEFAULT_DIRECTORY + ")");
             System.exit(1);
         }
 
         String imagePath = args[0];
         String method = args[1].toLowerCase();
+        boolean useTable = false;
+        int threads = 1;
+        boolean rotation = false;
+        boolean columns = false;
+        int coarse = 0;
+        int topK = 64;
+        int warmup = 0;
+        int runs = 1;
+        double progressInterval = 1.0;
+        int workers = 0;
+        int port = 0;
+        int lease = 1024;
+        int pngLevel = Deflater.DEFAULT_COMPRESSION;
+        int bandStart = 0;
+        int bandEnd = -1;
+        int columnStep = 1;
+        String cacheDirectory = null;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("table")) {
+                useTable = true;
+            } else if (args[i].equalsIgnoreCase("columns")) {
+                columns = true;
+            } else if (args[i].equalsIgnoreCase("rotation")) {
+                rotation = true;
+            } else if (args[i].startsWith("coarse=")) {
+                coarse = Integer.parseInt(args[i].substring("coarse=".length()));
+            } else if (args[i].startsWith("topk=")) {
+                topK = Integer.parseInt(args[i].substring("topk=".length()));
+            } else if (args[i].startsWith("workers=")) {
+                workers = Integer.parseInt(args[i].substring("workers=".length()));
+            } else if (args[i].startsWith("port=")) {
+                port = Integer.parseInt(args[i].substring("port=".length()));
+            } else if (args[i].startsWith("lease=")) {
+                lease = Integer.parseInt(args[i].substring("lease=".length()));
+            } else if (args[i].startsWith("cols=")) {
+                String[] band = args[i].substring("cols=".length()).split(":");
+                if (band.length != 2) {
+                    System.err.println("Bande de colonnes attendue: cols=X0:X1");
+                    System.exit(1);
+                }
+                bandStart = Integer.parseInt(band[0]);
+                bandEnd = Integer.parseInt(band[1]);
+            } else if (args[i].startsWith("sub=")) {
+                columnStep = Integer.parseInt(args[i].substring("sub=".length()));
+            } else if (args[i].startsWith("png=")) {
+                pngLevel = Integer.parseInt(args[i].substring("png=".length()));
+                if (pngLevel < 0 || pngLevel > 9) {
+                    System.err.println("Niveau de compression PNG invalide (0..9): " + pngLevel);
+                    System.exit(1);
+                }
+            } else if (args[i].equalsIgnoreCase("cache")) {
+                cacheDirectory = LumaCache.DEFAULT_DIRECTORY;
+            } else if (args[i].startsWith("cache=")) {
+                cacheDirectory = args[i].substring("cache=".length());
+            } else if (args[i].startsWith("progress=")) {
+                progressInterval = Double.parseDouble(args[i].substring("progress=".length()));
+            } else if (args[i].startsWith("warmup=")) {
+                warmup = Integer.parseInt(args[i].substring("warmup=".length()));
+            } else if (args[i].startsWith("runs=")) {
+                runs = Math.max(1, Integer.parseInt(args[i].substring("runs=".length())));
+            } else if (args[i].startsWith("threads=")) {
+                threads = Integer.parseInt(args[i].substring("threads=".length()));
+                if (threads <= 0) {
+                    threads = ParallelKeySearch.defaultThreads();
+                }
+            } else {
+                System.err.println("Option inconnue: " + args[i]);
+                System.exit(1);
+            }
+        }
+        // Combinaisons refusées avant tout hash ou décodage de l'image
+        boolean band = bandStart != 0 || bandEnd >= 0 || columnStep != 1;
+        boolean distributed = workers > 0 || port > 0;
+        if (band && (columns || distributed || RawImageFile.isRawFile(new File(imagePath)))) {
+            System.err.println("cols= et sub= ne s'appliquent qu'aux lignes d'une image PNG/JPEG, sans travailleurs");
+            System.exit(1);
+        }
+        if (columns && distributed) {
+            System.err.println("La recherche répartie ne traite que les lignes brouillées");
+            System.exit(1);
+        }
+        final boolean tableMode = useTable;
+        final int nThreads = threads;
+        final boolean rotationMode = rotation;
+        final boolean columnsMode = columns;
+        final int compressionLevel = pngLevel;
+        final int coarseFactor = coarse;
+        final int k = topK;
+        final int nWarmup = warmup;
+        final int nRuns = runs;
+        final int nWorkers = workers;
+        final int coordinatorPort = port;
+        final int leaseSize = lease;
+
+        boolean pearson = method.equals("pearson");
+        if (!pearson && !method.equals("euclidean") && !method.equals("euclidienne")) {
+            System.err.println("Méthode inconnue: " + method);
+            System.err.println("Utilisez 'pearson' ou 'euclidean'");
+            System.exit(1);
+            return;
+        }
 
-        BufferedImage image = ImageIO.read(new File(imagePath));
+        // Conteneur brut (voir RawImageFile) : niveaux de gris lus directement dans le fichier projeté
+        File imageFile = new File(imagePath);
+        boolean raw = RawImageFile.isRawFile(imageFile);
+        Profiler.Phases phases = new Profiler.Phases();
+
+        // Résultat déjà trouvé pour ce contenu d'image et ces options : ni décodage ni recherche
+        String cacheKey = cacheKey(pearson, columnsMode, coarseFactor, k, band, bandStart, bandEnd, columnStep);
+        LumaCache cache = null;
+        if (cacheDirectory != null) {
+            Path directory = Path.of(cacheDirectory);
+            LumaCache.Result cached = null;
+            try {
+                cache = phases.time("hash", () -> LumaCache.open(directory, imageFile.toPath()));
+                cached = cache.result(cacheKey);
+            } catch (IOException e) {
+                System.err.println("Cache inutilisable pour " + imagePath + " (" + e + "), recherche sans cache");
+                cache = null;
+            }
+            if (cached != null) {
+                System.out.println("=== Cassage de clé ===");
+                System.out.println("Image: " + imagePath + " (en cache: " + cache.hash() + ")");
+                System.out.println("\n=== RÉSULTAT FINAL ===");
+                System.out.println("Meilleure clé trouvée: " + cached.key);
+                System.out.println("Score final: " + String.format(pearson ? "%.6f" : "%.2f", cached.score));
+                String outputPath = outputPath(method, cached.key, raw);
+                writeUnscrambled(phases, imageFile, null, raw, columnsMode, cached.key, outputPath, compressionLevel,
+                        nThreads);
+                System.out.println("Image débrouillée sauvegardée: " + outputPath);
+                System.out.println("\nPhases (temps, octets alloués par le thread principal):");
+                System.out.println(phases.report());
+                return;
+            }
+        }
 
-        if (image == null) {
-            System.err.println("Impossible de lire l'image: " + imagePath);
-            System.exit(1);
+        BufferedImage image = null;
+        LumaImage rows = null;
+        boolean storeLuma = false;
+        // Niveaux de gris de l'image complète déjà calculés par une exécution précédente
+        if (cache != null && !raw && !band) {
+            LumaCache entry = cache;
+            try {
+                rows = phases.time("cache", entry::loadLuma);
+            } catch (IOException e) {
+                System.err.println("Cache illisible pour " + imagePath + " (" + e + "), image décodée");
+            }
         }
+        if (rows == null && raw) {
+            rows = phases.time("luma", () -> {
+                try (RawImageFile rawImage = RawImageFile.open(imageFile.toPath(), false)) {
+                    return rawImage.toLuma();
+                }
+            });
+        } else if (rows == null) {
+            // Niveaux de gris calculés pendant le décodage, éventuellement sur une bande de colonnes
+            int x0 = bandStart;
+            int x1 = bandEnd;
+            int step = columnStep;
+            LumaDecoder.Result decoded = null;
+            try {
+                decoded = phases.time("decode", () -> LumaDecoder.decode(imageFile, x0, x1, step));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Impossible de lire l'image: " + imagePath + " (" + e.getMessage() + ")");
+                System.exit(1);
+            }
+            rows = decoded.luma;
+            // Bande partielle : l'image complète ne sera décodée que pour l'écrire
+            image = decoded.complete ? decoded.image : null;
+            storeLuma = cache != null && decoded.complete;
+        }
+        // Colonnes brouillées : ce sont les lignes de la transposée, cassées par les mêmes recherches
+        LumaImage luma = columnsMode ? phases.time("transpose", rows::transpose) : rows;
 
         System.out.println("=== Cassage de clé ===");
         System.out.println("Image: " + imagePath);
-        System.out.println("Dimensions: " + image.getWidth() + "x" + image.getHeight() + "\n");
+        System.out.println("Dimensions: " + rows.width() + "x" + rows.height()
+                + (columnsMode ? " (colonnes brouillées)" : ""));
+        System.out.println("Noyaux: " + RowKernels.description() + "\n");
 
-        double timeTaken;
-        int bestKey;
-
-        if (method.equals("pearson")) {
-            timeTaken = Profiler.analyse(() -> breakKeyPearson(image));
-            bestKey = breakKeyPearson(image);
+        if (progressInterval > 0) {
+            SearchProgress.addListener(new SearchProgress.ConsoleListener(progressInterval));
+        }
+        Supplier<Integer> search;
+        if (nWorkers > 0 || coordinatorPort > 0) {
+            search = () -> breakKeyDistributed(imagePath, luma, pearson, nWorkers, coordinatorPort, leaseSize,
+                    nThreads);
         }
-        else if (method.equals("euclidean") || method.equals("euclidienne")) {
-            timeTaken = Profiler.analyse(() -> breakKeyEuclidean(image));
-            bestKey = breakKeyEuclidean(image);
+        else if (rotationMode) {
+            search = () -> breakKeyRotation(luma, pearson, nThreads);
+        }
+        else if (coarseFactor > 0) {
+            search = () -> breakKeyCoarse(luma, pearson, coarseFactor, k, nThreads);
+        }
+        else if (pearson) {
+            search = () -> breakKeyPearson(luma, tableMode, nThreads);
         }
         else {
-            System.err.println("Méthode inconnue: " + method);
-            System.err.println("Utilisez 'pearson' ou 'euclidean'");
-            System.exit(1);
-            return;
+            search = () -> breakKeyEuclidean(luma, tableMode, nThreads);
         }
+        // La recherche mesurée est aussi celle dont la clé est utilisée : une seule exécution par défaut
+        Profiler.Measurement<Integer> measurement = phases.time("search",
+                () -> Profiler.measure("Recherche", nWarmup, nRuns, search));
+        int bestKey = measurement.result;
 
         System.out.println("\n=== RÉSULTAT FINAL ===");
         System.out.println("Meilleure clé trouvée: " + bestKey);
-        System.out.println("Temps d'exécution: " + String.format("%.3f", timeTaken * 1000) + " ms");
+        System.out.println("Temps d'exécution: " + String.format("%.3f", measurement.medianSeconds() * 1000) + " ms");
+        if (measurement.iterations() > 1) {
+            System.out.println(measurement);
+        }
 
-        int height = image.getHeight();
-        int[] perm = generatePermutation(height, bestKey);
-        BufferedImage unscrambledImage = unScrambleLines(image, perm);
+        if (cache != null) {
+            // Après la recherche : les statistiques des lignes sont calculées par des noyaux déjà compilés
+            LumaCache entry = cache;
+            LumaImage decodedLuma = storeLuma ? rows : null;
+            try {
+                phases.time("cache", () -> {
+                    if (decodedLuma != null) {
+                        entry.storeLuma(decodedLuma);
+                    }
+                    // Score de la clé retenue, gardé avec elle pour les exécutions suivantes
+                    int[] perm = generatePermutation(luma.height(), bestKey);
+                    entry.storeResult(cacheKey, bestKey,
+                            pearson ? scorePearson(luma, perm) : scoreEuclidean(luma, perm));
+                    return null;
+                });
+            } catch (IOException e) {
+                System.err.println("Résultat non enregistré dans le cache (" + e + ")");
+            }
+        }
 
-        String outputPath = "unscrambled_" + method + "_key" + bestKey + ".png";
-        ImageIO.write(unscrambledImage, "png", new File(outputPath));
+        String outputPath = outputPath(method, bestKey, raw);
+        writeUnscrambled(phases, imageFile, image, raw, columnsMode, bestKey, outputPath, compressionLevel, nThreads);
         System.out.println("Image débrouillée sauvegardée: " + outputPath);
+        System.out.println("\nPhases (temps, octets alloués par le thread principal):");
+        System.out.println(phases.report());
     }
 }
@@ -5,26 +5,19 @@
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
 import javax.imageio.ImageIO;
 
 public class keyBreakOptimise {
 
+    private static final String USAGE = "Usage: java keyBreakOptimise <image_brouillee> [threads=N] [coarse=F]"
+            + " [topk=K] [warmup=W] [runs=N] [progress=T] [workers=N] [port=P] [lease=L] [cache[=DIR]]";
+
     // Convertit une image RGB en niveaux de gris
     public static int[][] rgb2gl(BufferedImage inputRGB) {
-        final int height = inputRGB.getHeight();
-        final int width = inputRGB.getWidth();
-        int[][] outGL = new int[height][width];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int argb = inputRGB.getRGB(x, y);
-                int r = (argb >> 16) & 0xFF;
-                int g = (argb >> 8) & 0xFF;
-                int b = argb & 0xFF;
-                int gray = (r * 299 + g * 587 + b * 114) / 1000;
-                outGL[y][x] = gray;
-            }
-        }
-        return outGL;
+        return RasterRows.toGray(inputRGB);
     }
 
     // Calcule la distance euclidienne entre deux lignes
@@ -32,11 +25,8 @@ public class keyBreakOptimise {
         if (x.length != y.length) {
             throw new IllegalArgumentException("Les lignes doivent avoir la même taille");
         }
-        double sum = 0.0;
-        for (int i = 0; i < x.length; i++) {
-            double diff = x[i] - y[i];
-            sum += diff * diff;
-        }
+        // Somme entière exacte (noyau vectoriel si disponible)
+        double sum = RowKernels.sumSquaredDiff(x, y);
         return Math.sqrt(sum);
     }
 
@@ -54,22 +44,30 @@ public class keyBreakOptimise {
         return totalScore;
     }
 
+    // Score euclidien de l'image débrouillée par perm, lu directement dans l'image brouillée
+    public static double scoreEuclidean(LumaImage scrambled, int[] perm) {
+        int height = perm.length;
+        if (height < 2) {
+            return 0.0;
+        }
+        double totalScore = 0.0;
+        for (int i = 0; i < height - 1; i++) {
+            double distance = scrambled.euclideanDistance(perm[i], perm[i + 1]);
+            totalScore += distance;
+        }
+        return totalScore;
+    }
+
     // Calcule la corrélation de Pearson entre deux lignes
     public static double pearsonCorrelation(int[] line1, int[] line2) {
         if (line1.length != line2.length || line1.length == 0) {
             return 0;
         }
-        double sumX = 0, sumY = 0, sumXY = 0, sumX2 = 0, sumY2 = 0;
+        // Sommes entières exactes (noyaux vectoriels si disponibles)
+        double sumX = RowKernels.sum(line1), sumY = RowKernels.sum(line2), sumXY = RowKernels.dot(line1, line2);
+        double sumX2 = RowKernels.dot(line1, line1), sumY2 = RowKernels.dot(line2, line2);
         int n = line1.length;
 
-        for (int i = 0; i < n; i++) {
-            sumX += line1[i];
-            sumY += line2[i];
-            sumXY += line1[i] * line2[i];
-            sumX2 += line1[i] * line1[i];
-            sumY2 += line2[i] * line2[i];
-        }
-
         double moyenneX = sumX / n;
         double moyenneY = sumY / n;
         double numerateur = sumXY - n * moyenneX * moyenneY;
@@ -94,6 +92,23 @@ public class keyBreakOptimise {
         return count > 0 ? score / count : 0;
     }
 
+    // Score de Pearson de l'image débrouillée par perm, lu directement dans l'image brouillée
+    public static double scorePearson(LumaImage scrambled, int[] perm) {
+        return scorePearson(scrambled, perm, RowStats.of(scrambled));
+    }
+
+    // Idem, avec les statistiques des lignes précalculées : seuls les produits croisés sont calculés
+    public static double scorePearson(LumaImage scrambled, int[] perm, RowStats stats) {
+        double score = 0;
+        int count = 0;
+        for (int i = 0; i < perm.length - 1; i++) {
+            double corr = stats.correlation(scrambled, perm[i], perm[i + 1]);
+            score += corr;
+            count++;
+        }
+        return count > 0 ? score / count : 0;
+    }
+
     // Génère la position brouillée d'une ligne
     public static int scrambledId(int id, int size, int s, int r) {
         return (r + (2 * s + 1) * id) % size;
@@ -108,6 +123,14 @@ public class keyBreakOptimise {
         return perm;
     }
 
+    // Remplit out avec la permutation (s, r), sans allocation
+    public static int[] generatePermutation(int size, int s, int r, int[] out) {
+        for (int i = 0; i < size; i++) {
+            out[i] = scrambledId(i, size, s, r);
+        }
+        return out;
+    }
+
     // Permute les lignes d'une matrice selon la permutation
     public static int[][] permuteLines(int[][] matrix, int[] perm) {
         int height = matrix.length;
@@ -119,21 +142,24 @@ public class keyBreakOptimise {
         return permutedMatrix;
     }
 
+    // Clés candidates d'une étape : base, base + step, ... (S seul : pas 1 ; R à S fixé : pas 128)
+    private static int[] stageKeys(int count, int step, int base) {
+        int[] keys = new int[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = base + i * step;
+        }
+        return keys;
+    }
+
     // Débrouille l'image avec la permutation donnée
     public static BufferedImage unScrambleLines(BufferedImage inputImg, int[] perm) {
-        int width = inputImg.getWidth();
         int height = inputImg.getHeight();
         if (perm.length != height) {
             throw new IllegalArgumentException("Taille d'image <> taille permutation");
         }
-        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        for (int y = 0; y < height; y++) {
-            int srcY = perm[y];
-            for (int x = 0; x < width; x++) {
-                int pixel = inputImg.getRGB(x, srcY);
-                out.setRGB(x, y, pixel);
-            }
-        }
+        // Même type et même ColorModel que l'image lue (pas de canal alpha ajouté)
+        BufferedImage out = RasterRows.createCompatible(inputImg);
+        RasterRows.copyRows(inputImg, out, perm, 1);
         return out;
     }
 
@@ -143,32 +169,50 @@ public class keyBreakOptimise {
      * Étape 2 : Trouve R (8 bits = 256 valeurs) avec Pearson
      */
     public static int[] breakKeyOptimized(BufferedImage scrambledImage) {
-        int height = scrambledImage.getHeight();
-        int[][] scrambledMatrix = rgb2gl(scrambledImage);
+        return breakKeyOptimized(scrambledImage, 1);
+    }
+
+    // Variante de breakKeyOptimized dont chaque étape est répartie sur threads cœurs
+    public static int[] breakKeyOptimized(BufferedImage scrambledImage, int threads) {
+        return breakKeyOptimized(scrambledImage, threads, 0, 0);
+    }
+
+    /**
+     * Variante en deux résolutions : si coarse > 0, chaque étape évalue ses
+     * candidats sur l'image réduite de coarse en largeur et ne réévalue que les
+     * topK meilleurs en pleine résolution (voir CoarseToFine).
+     */
+    public static int[] breakKeyOptimized(BufferedImage scrambledImage, int threads, int coarse, int topK) {
+        return breakKeyOptimized(LumaImage.of(scrambledImage), threads, coarse, topK);
+    }
 
+    // Même recherche sur une image déjà convertie en niveaux de gris
+    public static int[] breakKeyOptimized(LumaImage scrambledLuma, int threads, int coarse, int topK) {
         System.out.println("=== CASSAGE DE CLE OPTIMISE ===\n");
 
         // ÉTAPE 1 : Recherche de S avec Distance Euclidienne
         System.out.println("ETAPE 1/2 : Recherche de S (128 valeurs)");
         System.out.println("Methode : Distance Euclidienne\n");
 
-        int bestS = 0;
-        double bestScoreS = Double.POSITIVE_INFINITY;
-
-        for (int s = 0; s < 128; s++) {
-            int[] perm = generatePermutation(height, s, 0);
-            int[][] unscrambledMatrix = permuteLines(scrambledMatrix, perm);
-            double score = scoreEuclidean(unscrambledMatrix);
-
-            if (score < bestScoreS) {
-                bestScoreS = score;
-                bestS = s;
-                System.out.println("Nouveau meilleur S : " + bestS + " (score: " + bestScoreS + ")");
-            }
-
-            if ((s + 1) % 32 == 0) {
-                System.out.println("Progression: " + (s + 1) + "/128");
-            }
+        int bestS;
+        double bestScoreS;
+        if (coarse > 0) {
+            // Clés à R = 0 : la clé vaut S
+            SearchProgress progress = SearchProgress.start("etape 1 (S)", 128 + topK, true);
+            CoarseToFine.Result stage1 = CoarseToFine.search(scrambledLuma, coarse, topK, stageKeys(128, 1, 0), true,
+                    threads, luma -> BoundedSearch.scorers(luma, false), progress);
+            progress.finish();
+            bestS = stage1.key;
+            bestScoreS = stage1.score;
+            System.out.println(stage1);
+        } else {
+            // Lignes parcourues au pas 2s+1 (voir BoundedSearch.Scorer), S écarté dès que sa somme dépasse le meilleur score
+            SearchProgress progress = SearchProgress.start("etape 1 (S)", 128, true);
+            BoundedSearch.Result stage1 = BoundedSearch.search(scrambledLuma, false, 128, 1, threads, progress);
+            progress.finish();
+            bestS = stage1.key;
+            bestScoreS = stage1.score;
+            System.out.println(stage1);
         }
 
         System.out.println("\nS trouve : " + bestS);
@@ -178,23 +222,28 @@ public class keyBreakOptimise {
         System.out.println("\nETAPE 2/2 : Recherche de R (256 valeurs)");
         System.out.println("Methode : Correlation de Pearson\n");
 
-        int bestR = 0;
-        double bestScoreR = -Double.MAX_VALUE;
-
-        for (int r = 0; r < 256; r++) {
-            int[] perm = generatePermutation(height, bestS, r);
-            int[][] unscrambledMatrix = permuteLines(scrambledMatrix, perm);
-            double score = scorePearson(unscrambledMatrix);
-
-            if (score > bestScoreR) {
-                bestScoreR = score;
-                bestR = r;
-                System.out.println("Nouveau meilleur R : " + bestR + " (score: " + bestScoreR + ")");
-            }
-
-            if ((r + 1) % 64 == 0) {
-                System.out.println("Progression: " + (r + 1) + "/256");
-            }
+        int bestR;
+        double bestScoreR;
+
+        final int fixedS = bestS;
+        if (coarse > 0) {
+            SearchProgress progress = SearchProgress.start("etape 2 (R)", 256 + topK, false);
+            CoarseToFine.Result stage2 = CoarseToFine.search(scrambledLuma, coarse, topK, stageKeys(256, 128, fixedS),
+                    false, threads, luma -> BoundedSearch.scorers(luma, true), progress);
+            progress.finish();
+            bestR = stage2.key >> 7;
+            bestScoreR = stage2.score;
+            System.out.println(stage2);
+        } else {
+            // Changer R ne fait que décaler la même suite de lignes : une seule passe pour les 256 valeurs
+            SearchProgress progress = SearchProgress.start("etape 2 (R)", 256, false);
+            ParallelKeySearch.Result stage2 = RotationSolver.bestOffset(scrambledLuma, RowStats.of(scrambledLuma),
+                    bestS, 256);
+            progress.scored(256);
+            progress.offer(stage2.key, stage2.score);
+            progress.finish();
+            bestR = stage2.key >> 7;
+            bestScoreR = stage2.score;
         }
 
         System.out.println("\nR trouve : " + bestR);
@@ -211,45 +260,206 @@ public class keyBreakOptimise {
         return new int[]{bestS, bestR, finalKey};
     }
 
+    /**
+     * Les deux étapes réparties sur des processus travailleurs (voir
+     * DistributedKeySearch) : les 128 valeurs de S puis les 256 valeurs de R
+     * sont distribuées par baux de leaseSize clés. Même résultat que
+     * breakKeyOptimized.
+     */
+    public static int[] breakKeyDistributed(String imagePath, int workers, int port, int leaseSize, int threads) {
+        System.out.println("=== CASSAGE DE CLE OPTIMISE (REPARTI) ===\n");
+        try (DistributedKeySearch.Coordinator coordinator = new DistributedKeySearch.Coordinator(port,
+                DistributedKeySearch.DEFAULT_LEASE_TIMEOUT_MILLIS)) {
+            System.out.println("Coordinateur a l'ecoute sur le port " + coordinator.port() + ", " + workers
+                    + " travailleurs locaux");
+            coordinator.startLocalWorkers(workers, threads);
+
+            ParallelKeySearch.Result stage1 = coordinator.search(imagePath, false, stageKeys(128, 1, 0), leaseSize);
+            int bestS = stage1.key;
+            System.out.println("S trouve : " + bestS + " (score euclidien : " + stage1.score + ")");
+
+            ParallelKeySearch.Result stage2 = coordinator.search(imagePath, true, stageKeys(256, 128, bestS),
+                    leaseSize);
+            int bestR = stage2.key >> 7;
+            System.out.println("R trouve : " + bestR + " (score Pearson : " + stage2.score + ")");
+            System.out.println("Baux reattribues : " + coordinator.reassignedLeases());
+            System.out.println("Cle finale  : " + stage2.key + " (15 bits)");
+            return new int[]{bestS, bestR, stage2.key};
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Recherche interrompue", e);
+        }
+    }
+
+    // Image décodée ; arrêt avec un message si le fichier n'est pas une image lisible.
+    private static BufferedImage read(File imageFile) throws IOException {
+        BufferedImage image = ImageIO.read(imageFile);
+        if (image == null) {
+            System.err.println("Impossible de lire l'image: " + imageFile);
+            System.exit(1);
+        }
+        return image;
+    }
+
+    // Écrit l'image débrouillée par (S, R), nommée d'après la clé (image : image décodée, null pour la lire).
+    private static void writeUnscrambled(Profiler.Phases phases, File imageFile, BufferedImage decoded, int s, int r,
+                                         int threads) throws Exception {
+        BufferedImage image = decoded != null ? decoded : phases.time("decode", () -> read(imageFile));
+        // Sauvegarde de l'image débrouillée
+        String outputPath = "unscrambled_optimized_key" + ((r << 7) | s) + ".png";
+        phases.time("encode", () -> {
+            int[] perm = generatePermutation(image.getHeight(), s, r);
+            BufferedImage unscrambledImage = unScrambleLines(image, perm);
+            PngStreamWriter.write(unscrambledImage, new File(outputPath), Deflater.DEFAULT_COMPRESSION, threads);
+            return true;
+        });
+        System.out.println("Image debrouillee sauvegardee: " + outputPath);
+    }
+
     public static void main(String[] args) throws Exception {
         if (args.length < 1) {
-            System.err.println("Usage: java keyBreakOptimise <image_brouillee>");
+            System.err.println(USAGE);
             System.exit(1);
         }
 
         String imagePath = args[0];
-        BufferedImage image = ImageIO.read(new File(imagePath));
-        
-        if (image == null) {
-            System.err.println("Impossible de lire l'image: " + imagePath);
-            System.exit(1);
+        int threads = 1;
+        int coarse = 0;
+        int topK = 16;
+        int warmup = 0;
+        int runs = 1;
+        double progressInterval = 1.0;
+        int workers = 0;
+        int port = 0;
+        int lease = 16;
+        String cacheDirectory = null;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("threads=")) {
+                threads = Integer.parseInt(args[i].substring("threads=".length()));
+                if (threads <= 0) {
+                    threads = ParallelKeySearch.defaultThreads();
+                }
+            } else if (args[i].startsWith("coarse=")) {
+                coarse = Integer.parseInt(args[i].substring("coarse=".length()));
+            } else if (args[i].startsWith("topk=")) {
+                topK = Integer.parseInt(args[i].substring("topk=".length()));
+            } else if (args[i].startsWith("workers=")) {
+                workers = Integer.parseInt(args[i].substring("workers=".length()));
+            } else if (args[i].startsWith("port=")) {
+                port = Integer.parseInt(args[i].substring("port=".length()));
+            } else if (args[i].startsWith("lease=")) {
+                lease = Integer.parseInt(args[i].substring("lease=".length()));
+            } else if (args[i].equalsIgnoreCase("cache")) {
+                cacheDirectory = LumaCache.DEFAULT_DIRECTORY;
+            } else if (args[i].startsWith("cache=")) {
+                cacheDirectory = args[i].substring("cache=".length());
+            } else if (args[i].startsWith("progress=")) {
+                progressInterval = Double.parseDouble(args[i].substring("progress=".length()));
+            } else if (args[i].startsWith("warmup=")) {
+                warmup = Integer.parseInt(args[i].substring("warmup=".length()));
+            } else if (args[i].startsWith("runs=")) {
+                runs = Math.max(1, Integer.parseInt(args[i].substring("runs=".length())));
+            } else {
+                System.err.println("Option inconnue: " + args[i]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+        }
+        final int nThreads = threads;
+        final int coarseFactor = coarse;
+        final int k = topK;
+        final int nWarmup = warmup;
+        final int nRuns = runs;
+        final int nWorkers = workers;
+        final int coordinatorPort = port;
+        final int leaseSize = lease;
+        if (progressInterval > 0) {
+            SearchProgress.addListener(new SearchProgress.ConsoleListener(progressInterval));
+        }
+        Profiler.Phases phases = new Profiler.Phases();
+        File imageFile = new File(imagePath);
+
+        // Clé déjà trouvée pour ce contenu d'image (voir LumaCache) : seule l'image débrouillée est écrite
+        String cacheKey = coarseFactor > 0 ? "optimise,coarse=" + coarseFactor + ",topk=" + k : "optimise";
+        LumaCache cache = null;
+        LumaImage cachedLuma = null;
+        if (cacheDirectory != null) {
+            Path directory = Path.of(cacheDirectory);
+            LumaCache.Result cached = null;
+            try {
+                cache = phases.time("hash", () -> LumaCache.open(directory, imageFile.toPath()));
+                cached = cache.result(cacheKey);
+            } catch (IOException e) {
+                System.err.println("Cache inutilisable pour " + imagePath + " (" + e + "), recherche sans cache");
+                cache = null;
+            }
+            if (cached != null) {
+                System.out.println("Image: " + imagePath + " (en cache: " + cache.hash() + ")");
+                System.out.println("\n=== RESULTAT FINAL ===");
+                System.out.println("S (step)    : " + (cached.key & 0x7F) + " (7 bits)");
+                System.out.println("R (offset)  : " + (cached.key >> 7) + " (8 bits)");
+                System.out.println("Cle finale  : " + cached.key + " (15 bits)");
+                System.out.println("Score Pearson : " + cached.score);
+                writeUnscrambled(phases, imageFile, null, cached.key & 0x7F, cached.key >> 7, nThreads);
+                System.out.println("\nPhases (temps, octets alloués par le thread principal):");
+                System.out.println(phases.report());
+                return;
+            }
+            if (cache != null) {
+                LumaCache entry = cache;
+                try {
+                    cachedLuma = phases.time("cache", entry::loadLuma);
+                } catch (IOException e) {
+                    System.err.println("Cache illisible pour " + imagePath + " (" + e + "), image décodée");
+                }
+            }
         }
 
+        // Niveaux de gris en cache : l'image ne sera décodée que pour écrire le résultat
+        BufferedImage image = cachedLuma != null ? null : phases.time("decode", () -> read(imageFile));
+        LumaImage luma = cachedLuma != null ? cachedLuma : phases.time("luma", () -> LumaImage.of(image));
+
         System.out.println("Image: " + imagePath);
-        System.out.println("Dimensions: " + image.getWidth() + "x" + image.getHeight());
+        System.out.println("Dimensions: " + luma.width() + "x" + luma.height());
         System.out.println("Tests a effectuer: 128 + 256 = 384 (au lieu de 32768)\n");
 
-        long startTime = System.currentTimeMillis();
-        int[] result = breakKeyOptimized(image);
-        long endTime = System.currentTimeMillis();
+        // Une seule recherche par défaut : son résultat sert aussi au débrouillage
+        Profiler.Measurement<int[]> measurement = phases.time("search", () -> Profiler.measure("Recherche",
+                nWarmup, nRuns, () -> nWorkers > 0 || coordinatorPort > 0
+                        ? breakKeyDistributed(imagePath, nWorkers, coordinatorPort, leaseSize, nThreads)
+                        : breakKeyOptimized(luma, nThreads, coarseFactor, k)));
+        int[] result = measurement.result;
 
         int bestS = result[0];
         int bestR = result[1];
         int finalKey = result[2];
 
-        System.out.println("\nTemps d'execution: " + (endTime - startTime) + " ms");
-
+        System.out.println("\nTemps d'exécution: " + String.format("%.3f", measurement.medianSeconds() * 1000) + " ms");
+        if (measurement.iterations() > 1) {
+            System.out.println(measurement);
+        }
 
-        double timeTaken = Profiler.analyse(() -> breakKeyOptimized(image));
-        System.out.println("\nTemps d'exécution: " + String.format("%.3f", timeTaken * 1000) + " ms");
+        if (cache != null) {
+            LumaCache entry = cache;
+            boolean storeLuma = cachedLuma == null;
+            try {
+                phases.time("cache", () -> {
+                    if (storeLuma) {
+                        entry.storeLuma(luma);
+                    }
+                    int[] perm = generatePermutation(luma.height(), bestS, bestR);
+                    entry.storeResult(cacheKey, finalKey, scorePearson(luma, perm));
+                    return null;
+                });
+            } catch (IOException e) {
+                System.err.println("Résultat non enregistré dans le cache (" + e + ")");
+            }
+        }
 
-        // Sauvegarde de l'image débrouillée
-        int height = image.getHeight();
-        int[] perm = generatePermutation(height, bestS, bestR);
-        BufferedImage unscrambledImage = unScrambleLines(image, perm);
-        
-        String outputPath = "unscrambled_optimized_key" + finalKey + ".png";
-        ImageIO.write(unscrambledImage, "png", new File(outputPath));
-        System.out.println("Image debrouillee sauvegardee: " + outputPath);
+        writeUnscrambled(phases, imageFile, image, bestS, bestR, nThreads);
+        System.out.println("\nPhases (temps, octets alloués par le thread principal):");
+        System.out.println(phases.report());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Recherches de clé accélérées (abandon anticipé, rotation des décalages,
+ * table des paires de lignes, parcours des lignes au pas 2s+1) : même clé et
+ * même score, au bit près, que le parcours exhaustif des 32768 clés.
+ */
+class KeySearchTest {
+
+    private static final int WIDTH = 48;
+    // 64 : tous les pas sont premiers avec la hauteur ; 75 = 3 x 5 x 5 : pas 3, 5, 15... non bijectifs
+    private static final int[] HEIGHTS = {64, 75};
+    private static final int[] KEYS = {0, 1, 12345, 4242, 32767};
+
+    // Image claire régulière (dégradés et bruit léger), brouillée par key.
+    private static LumaImage scrambled(int height, int key) {
+        Random random = new Random(31L * height + key);
+        byte[] plain = new byte[WIDTH * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double v = 128 + 60 * Math.sin((x + 2.5 * y) / 9.0) + 40 * Math.cos(y / 7.0) + random.nextInt(9);
+                plain[y * WIDTH + x] = (byte) Math.max(0, Math.min(255, (int) v));
+            }
+        }
+        int[] perm = keyBreak.generatePermutation(height, key);
+        byte[] data = new byte[plain.length];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(plain, y * WIDTH, data, perm[y] * WIDTH, WIDTH);
+        }
+        return new LumaImage(WIDTH, height, data);
+    }
+
+    private static double plainScore(LumaImage luma, boolean pearson, int key) {
+        int[] perm = keyBreak.generatePermutation(luma.height(), key);
+        return pearson ? keyBreak.scorePearson(luma, perm) : keyBreak.scoreEuclidean(luma, perm);
+    }
+
+    // Parcours exhaustif : meilleur score, puis plus petite clé.
+    private static ParallelKeySearch.Result exhaustive(LumaImage luma, boolean pearson) {
+        int bestKey = 0;
+        double bestScore = plainScore(luma, pearson, 0);
+        for (int key = 1; key < 32768; key++) {
+            double score = plainScore(luma, pearson, key);
+            if (pearson ? score > bestScore : score < bestScore) {
+                bestKey = key;
+                bestScore = score;
+            }
+        }
+        return new ParallelKeySearch.Result(bestKey, bestScore);
+    }
+
+    @Test
+    void searchesMatchExhaustiveScan() {
+        for (int height : HEIGHTS) {
+            for (int key : KEYS) {
+                LumaImage luma = scrambled(height, key);
+                for (boolean pearson : new boolean[] {true, false}) {
+                    String label = "H=" + height + " clé=" + key + (pearson ? " pearson" : " euclidienne");
+                    ParallelKeySearch.Result expected = exhaustive(luma, pearson);
+
+                    for (int threads : new int[] {1, 3}) {
+                        BoundedSearch.Result bounded = BoundedSearch.search(luma, pearson, 128, 256, threads);
+                        assertEquals(expected.key, bounded.key, label + " BoundedSearch");
+                        assertEquals(expected.score, bounded.score, label + " BoundedSearch");
+
+                        ParallelKeySearch.Result rotation = RotationSolver.search(luma, pearson, threads);
+                        assertEquals(expected.key, rotation.key, label + " RotationSolver");
+                        assertEquals(expected.score, rotation.score, label + " RotationSolver");
+
+                        int table = pearson ? keyBreak.breakKeyPearson(luma, true, threads)
+                                : keyBreak.breakKeyEuclidean(luma, true, threads);
+                        assertEquals(expected.key, table, label + " table");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void keyScorersMatchPlainScore() {
+        for (int height : HEIGHTS) {
+            LumaImage luma = scrambled(height, 12345);
+            for (boolean pearson : new boolean[] {true, false}) {
+                ParallelKeySearch.BoundedKeyScorer stride = BoundedSearch.scorers(luma, pearson).get();
+                RowPairTable table = pearson ? RowPairTable.pearson(luma, RowPairTable.DEFAULT_MAX_BYTES)
+                        : RowPairTable.euclidean(luma, RowPairTable.DEFAULT_MAX_BYTES);
+                for (int key = 0; key < 32768; key++) {
+                    double expected = plainScore(luma, pearson, key);
+                    assertEquals(expected, stride.score(key), "pas 2s+1, H=" + height + " clé=" + key);
+                    assertEquals(expected, table.scoreKey(key), "table, H=" + height + " clé=" + key);
+                }
+            }
+        }
+    }
+}
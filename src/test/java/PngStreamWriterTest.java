@@ -0,0 +1,98 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PNG écrits par PngStreamWriter relus par ImageIO : en-tête zlib, bandes
+ * compressées en parallèle (SYNC_FLUSH, dictionnaire amorcé) et Adler-32
+ * combinée doivent donner exactement les pixels de départ.
+ */
+class PngStreamWriterTest {
+
+    private static final int WIDTH = 97;
+    // Plusieurs bandes sur 4 threads (au moins 16 lignes par bande)
+    private static final int HEIGHT = 301;
+
+    // Pixels réguliers (filtres Sub/Up/Paeth utiles) mêlés de bruit, alpha variable.
+    private static BufferedImage image(int type) {
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, type);
+        Random random = new Random(type);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int r = (x * 3 + y) & 0xFF;
+                int g = (y * 5 + random.nextInt(4)) & 0xFF;
+                int b = random.nextInt(256);
+                int a = (x + y * 7) & 0xFF;
+                img.setRGB(x, y, a << 24 | r << 16 | g << 8 | b);
+            }
+        }
+        return img;
+    }
+
+    @Test
+    void roundTripThroughImageIO() throws IOException {
+        int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR,
+                BufferedImage.TYPE_BYTE_GRAY};
+        for (int type : types) {
+            BufferedImage img = image(type);
+            for (int level : new int[] {0, 4, 9}) {
+                for (int threads : new int[] {1, 4}) {
+                    String label = "type " + type + ", niveau " + level + ", " + threads + " thread(s)";
+                    ByteArrayOutputStream png = new ByteArrayOutputStream();
+                    PngStreamWriter.write(img, png, level, threads);
+                    BufferedImage read = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+                    assertNotNull(read, label);
+                    assertEquals(WIDTH, read.getWidth(), label);
+                    assertEquals(HEIGHT, read.getHeight(), label);
+                    for (int y = 0; y < HEIGHT; y++) {
+                        for (int x = 0; x < WIDTH; x++) {
+                            if (type == BufferedImage.TYPE_BYTE_GRAY) {
+                                assertEquals(img.getRaster().getSample(x, y, 0), read.getRaster().getSample(x, y, 0),
+                                        label + " (" + x + ", " + y + ")");
+                            } else {
+                                assertEquals(img.getRGB(x, y), read.getRGB(x, y), label + " (" + x + ", " + y + ")");
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void failsWithoutLeavingAFileWhenImageIOCannotWrite() throws IOException {
+        // Composantes flottantes : aucun writer PNG d'ImageIO
+        ComponentColorModel cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), false, false,
+                Transparency.OPAQUE, DataBuffer.TYPE_FLOAT);
+        WritableRaster raster = cm.createCompatibleWritableRaster(4, 4);
+        BufferedImage img = new BufferedImage(cm, raster, false, null);
+        File file = Files.createTempFile("png-stream", ".png").toFile();
+        try {
+            assertThrows(IOException.class, () -> PngStreamWriter.write(img, file, -1, 1));
+            assertFalse(file.exists());
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
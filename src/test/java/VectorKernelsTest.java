@@ -0,0 +1,70 @@
+//  SAE S1.01-02
+//  Projet Java - Brouillage/Débrouillage d'image
+//  Auteur - Nathan Tutin , Tom Ruffin
+//  21/12/2025
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Noyaux vectoriels : exacts (mêmes sommes que la version scalaire) et
+ * réellement utilisés, y compris sur des vecteurs de 128 bits.
+ */
+class VectorKernelsTest {
+
+    // Lancé dans une JVM fille : affiche l'implémentation choisie par RowKernels.
+    public static final class Probe {
+        public static void main(String[] args) {
+            System.out.println(RowKernels.isVectorized() + " " + RowKernels.description());
+        }
+    }
+
+    @Test
+    void vectorPathActiveOnSseOnly() throws Exception {
+        // -XX:UseAVX=0 limite HotSpot x86 à SSE (vecteurs de 128 bits), comme NEON ; ignoré ailleurs
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(List.of(java, "-XX:+IgnoreUnrecognizedVMOptions", "-XX:UseAVX=0",
+                "--add-modules", "jdk.incubator.vector", "-cp", System.getProperty("java.class.path"),
+                Probe.class.getName()))
+                .redirectErrorStream(true)
+                .start();
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append('\n');
+            }
+        }
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS), "JVM fille bloquée");
+        assertEquals(0, process.exitValue(), output.toString());
+        assertTrue(output.toString().contains("true vectoriel"), "Noyaux scalaires sous -XX:UseAVX=0:\n" + output);
+    }
+
+    @Test
+    void byteKernelsMatchScalar() {
+        assertTrue(RowKernels.isVectorized(), RowKernels.description());
+        RowKernels.Impl scalar = new RowKernels.Scalar();
+        Random random = new Random(0x5AE);
+        for (int trial = 0; trial < 2000; trial++) {
+            int n = random.nextInt(300);
+            byte[] data = new byte[2 * n + random.nextInt(8)];
+            random.nextBytes(data);
+            // Seconde ligne en fin de tableau : aucun chargement ne doit déborder
+            int offA = random.nextInt(data.length - 2 * n + 1);
+            int offB = data.length - n;
+            assertEquals(scalar.sum(data, offB, n), RowKernels.sum(data, offB, n));
+            assertEquals(scalar.dot(data, offA, offB, n), RowKernels.dot(data, offA, offB, n));
+            assertEquals(scalar.sumSquaredDiff(data, offA, offB, n), RowKernels.sumSquaredDiff(data, offA, offB, n));
+        }
+    }
+}